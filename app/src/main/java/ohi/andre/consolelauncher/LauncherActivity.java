@@ -32,7 +32,9 @@ import java.io.PrintStream;
 import ohi.andre.consolelauncher.commands.main.MainPack;
 import ohi.andre.consolelauncher.commands.tuixt.TuixtActivity;
 import ohi.andre.consolelauncher.managers.ContactManager;
+import ohi.andre.consolelauncher.managers.FrecencyManager;
 import ohi.andre.consolelauncher.managers.TerminalManager;
+import ohi.andre.consolelauncher.managers.XMLPrefsLoader;
 import ohi.andre.consolelauncher.managers.XMLPrefsManager;
 import ohi.andre.consolelauncher.managers.notifications.NotificationManager;
 import ohi.andre.consolelauncher.managers.notifications.NotificationService;
@@ -149,6 +151,13 @@ public class LauncherActivity extends AppCompatActivity implements Reloadable {
             @Override
             public void uncaughtException(Thread t, Throwable e) {
                 Tuils.log(e);
+                try {
+                    main.getMainPack().appsManager.flushLaunches(true);
+                } catch (Exception e1) {}
+                try {
+                    XMLPrefsManager.flush();
+                    FrecencyManager.flush();
+                } catch (Exception e1) {}
                 try {
                     e.printStackTrace(new PrintStream(new FileOutputStream(new File(Tuils.getFolder(), "crash.txt"), true)));
                 } catch (FileNotFoundException e1) {}
@@ -156,6 +165,7 @@ public class LauncherActivity extends AppCompatActivity implements Reloadable {
         });
 
         try {
+            XMLPrefsLoader.useCache(getCacheDir());
             XMLPrefsManager.create();
             TimeManager.create();
         } catch (Exception e) {
@@ -193,7 +203,7 @@ public class LauncherActivity extends AppCompatActivity implements Reloadable {
             }
         }
 
-        NotificationManager.create();
+//        notifications.xml was loaded by XMLPrefsManager.create
         boolean notifications = XMLPrefsManager.get(boolean.class, NotificationManager.Options.show_notifications);
         if(notifications) {
             LocalBroadcastManager.getInstance(this).registerReceiver(onNotice, new IntentFilter("Msg"));
@@ -272,7 +282,10 @@ public class LauncherActivity extends AppCompatActivity implements Reloadable {
         if(main != null) {
             main.destroy();
         }
+        if(ui != null) ui.destroy();
 
+        XMLPrefsManager.flush();
+        FrecencyManager.flush();
         System.exit(0);
     }
 
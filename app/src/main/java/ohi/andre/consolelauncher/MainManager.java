@@ -7,9 +7,14 @@ import android.text.Spanned;
 import android.text.style.ForegroundColorSpan;
 import android.util.Log;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.regex.Pattern;
 
 import ohi.andre.consolelauncher.commands.Command;
+import ohi.andre.consolelauncher.commands.CommandAbstraction;
 import ohi.andre.consolelauncher.commands.CommandGroup;
 import ohi.andre.consolelauncher.commands.CommandTuils;
 import ohi.andre.consolelauncher.commands.ExecutePack;
@@ -18,6 +23,7 @@ import ohi.andre.consolelauncher.commands.specific.RedirectCommand;
 import ohi.andre.consolelauncher.managers.AliasManager;
 import ohi.andre.consolelauncher.managers.AppsManager;
 import ohi.andre.consolelauncher.managers.ContactManager;
+import ohi.andre.consolelauncher.managers.FrecencyManager;
 import ohi.andre.consolelauncher.managers.ShellManager;
 import ohi.andre.consolelauncher.managers.TerminalManager;
 import ohi.andre.consolelauncher.managers.XMLPrefsManager;
@@ -197,6 +203,7 @@ public class MainManager {
                 return false;
             }
 
+            FrecencyManager.record(FrecencyManager.ALIAS, alias);
             mainPack.executer.exec(aliasValue, alias);
 
             return true;
@@ -230,9 +237,17 @@ public class MainManager {
         Pattern pl = Pattern.compile("%l", Pattern.CASE_INSENSITIVE);
         Pattern pn = Pattern.compile("%n", Pattern.CASE_INSENSITIVE);
 
+//        where the shell looks for commands: PATH, and the dirs which may be missing from the PATH of an app (su is in /sbin)
+        final String[] BIN_DIRS = {"/sbin", "/system/bin", "/system/xbin", "/vendor/bin"};
+        String[] binDirs;
+
         @Override
         public boolean trigger(ExecutePack info, String input) {
             AppsManager.LaunchInfo i = mainPack.appsManager.findLaunchInfoWithLabel(input, AppsManager.SHOWN_APPS);
+//            the arguments of a command could make it look like a label with typos
+            if (i == null && !input.contains(Tuils.SPACE) && !isShellCommand(input)) {
+                i = mainPack.appsManager.findLaunchInfoWithTypos(input);
+            }
             if (i == null) {
                 return false;
             }
@@ -265,6 +280,29 @@ public class MainManager {
             mContext.startActivity(intent);
             return true;
         }
+
+//        a misspelled app shouldn't steal a real shell command (e.g. "grep" and an app called "Greg")
+        private boolean isShellCommand(String name) {
+            if(name.length() == 0 || name.contains(File.separator)) return true;
+
+            if(binDirs == null) {
+                List<String> dirs = new ArrayList<>(Arrays.asList(BIN_DIRS));
+
+                String path = System.getenv("PATH");
+                if(path != null) {
+                    for(String dir : path.split(File.pathSeparator)) {
+                        if(dir.length() > 0 && !dirs.contains(dir)) dirs.add(dir);
+                    }
+                }
+
+                binDirs = dirs.toArray(new String[dirs.size()]);
+            }
+
+            for(String dir : binDirs) {
+                if(new File(dir, name).exists()) return true;
+            }
+            return false;
+        }
     }
 
     private class TuiCommandTrigger implements CmdTrigger {
@@ -290,6 +328,8 @@ public class MainManager {
                         }
 
                         if (command != null) {
+                            recordUsage(command);
+
                             String output = command.exec(mContext.getResources(), info);
 
                             if(output != null) {
@@ -308,5 +348,18 @@ public class MainManager {
                 return returnValue[0];
             }
         }
+
+        private void recordUsage(Command command) {
+            FrecencyManager.record(FrecencyManager.COMMAND, command.cmd.getClass().getSimpleName());
+
+            int[] args = command.cmd.argType();
+            if(args == null || command.mArgs == null) return;
+
+            for(int count = 0; count < args.length && count < command.mArgs.length; count++) {
+                if(args[count] == CommandAbstraction.CONTACTNUMBER && command.mArgs[count] instanceof String) {
+                    FrecencyManager.record(FrecencyManager.CONTACT, (String) command.mArgs[count]);
+                }
+            }
+        }
     }
 }
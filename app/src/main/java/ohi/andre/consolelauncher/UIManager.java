@@ -7,7 +7,9 @@ import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.graphics.Typeface;
+import android.os.Build;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.text.Editable;
 import android.text.TextWatcher;
 import android.view.GestureDetector;
@@ -40,7 +42,6 @@ import ohi.andre.consolelauncher.managers.XMLPrefsManager;
 import ohi.andre.consolelauncher.managers.suggestions.SuggestionRunnable;
 import ohi.andre.consolelauncher.managers.suggestions.SuggestionsManager;
 import ohi.andre.consolelauncher.tuils.Sequence;
-import ohi.andre.consolelauncher.tuils.StoppableThread;
 import ohi.andre.consolelauncher.tuils.TimeManager;
 import ohi.andre.consolelauncher.tuils.Tuils;
 import ohi.andre.consolelauncher.tuils.interfaces.CommandExecuter;
@@ -269,7 +270,22 @@ public class UIManager implements OnTouchListener {
     private boolean navigatingWithSpace = false;
 
     private TextView terminalView;
-    private Thread lastSuggestionThread;
+//    one long-lived worker computes the suggestions of the latest request
+    private HandlerThread suggestionThread;
+    private Handler suggestionHandler;
+    private int suggestionDebounce;
+    private volatile SuggestionRequest lastSuggestionRequest;
+
+    private static class SuggestionRequest {
+        final String before, lastWord;
+        final int page;
+
+        SuggestionRequest(String before, String lastWord, int page) {
+            this.before = before;
+            this.lastWord = lastWord;
+            this.page = page;
+        }
+    }
     private Handler activityHandler;
     private Runnable removeAllSuggestions = new Runnable() {
         @Override
@@ -300,6 +316,13 @@ public class UIManager implements OnTouchListener {
         @Override
         public void onClick(View v) {
             SuggestionsManager.Suggestion suggestion = (SuggestionsManager.Suggestion) v.getTag(R.id.suggestion_id);
+
+            if(suggestion.type == SuggestionsManager.Suggestion.TYPE_MORE) {
+                SuggestionRequest last = lastSuggestionRequest;
+                if(last != null) requestSuggestion(new SuggestionRequest(last.before, last.lastWord, (Integer) suggestion.object), 0);
+                return;
+            }
+
             boolean execOnClick = suggestion.exec;
 
             String text = suggestion.getText();
@@ -330,7 +353,11 @@ public class UIManager implements OnTouchListener {
         requestSuggestion(before, lastWord);
     }
 
-    private void requestSuggestion(final String before, final String lastWord) {
+    private void requestSuggestion(String before, String lastWord) {
+        requestSuggestion(new SuggestionRequest(before, lastWord, 0), suggestionDebounce);
+    }
+
+    private void requestSuggestion(SuggestionRequest request, int delay) {
 
         if (suggestionViewParams == null) {
             suggestionViewParams = new LinearLayout.LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT);
@@ -352,75 +379,74 @@ public class UIManager implements OnTouchListener {
             catch (Exception e) {}
         }
 
-        if (lastSuggestionThread != null) {
-            lastSuggestionThread.interrupt();
-            suggestionRunnable.interrupt();
-            if(activityHandler != null) {
-                activityHandler.removeCallbacks(suggestionRunnable);
-            }
+        lastSuggestionRequest = request;
+
+        suggestionRunnable.interrupt();
+        if(activityHandler != null) {
+            activityHandler.removeCallbacks(suggestionRunnable);
         }
 
-        lastSuggestionThread = new StoppableThread() {
-            @Override
-            public void run() {
-                super.run();
+//        only the latest request survives, the others are dropped before doing any work
+        suggestionHandler.removeCallbacks(suggestionWorker);
+        suggestionHandler.postDelayed(suggestionWorker, delay);
+    }
 
-                final SuggestionsManager.Suggestion[] suggestions = suggestionsManager.getSuggestions(info, before, lastWord);
+    private Runnable suggestionWorker = new Runnable() {
+        @Override
+        public void run() {
+            final SuggestionRequest request = lastSuggestionRequest;
+            if(request == null) return;
 
-                if(suggestions.length == 0) {
-                    ((Activity) mContext).runOnUiThread(removeAllSuggestions);
-                    return;
-                }
+            final SuggestionsManager.Suggestion[] suggestions = suggestionsManager.getSuggestions(info, request.before, request.lastWord, request.page);
 
-                if (Thread.interrupted()) {
-                    suggestionRunnable.interrupt();
-                    return;
-                }
+            if (request != lastSuggestionRequest) {
+                return;
+            }
 
-                final TextView[] existingViews = new TextView[suggestionsView.getChildCount()];
-                for (int count = 0; count < existingViews.length; count++) {
-                    existingViews[count] = (TextView) suggestionsView.getChildAt(count);
-                }
+            if(suggestions.length == 0) {
+                ((Activity) mContext).runOnUiThread(removeAllSuggestions);
+                return;
+            }
 
-                if (Thread.interrupted()) {
-                    suggestionRunnable.interrupt();
-                    return;
-                }
+            final TextView[] existingViews = new TextView[suggestionsView.getChildCount()];
+            for (int count = 0; count < existingViews.length; count++) {
+                existingViews[count] = (TextView) suggestionsView.getChildAt(count);
+            }
 
-                int n = suggestions.length - existingViews.length;
-                TextView[] toAdd = null;
-                TextView[] toRecycle = null;
-                if (n == 0) {
-                    toRecycle = existingViews;
-                    toAdd = null;
-                } else if (n > 0) {
-                    toRecycle = existingViews;
-                    toAdd = new TextView[n];
-                    for (int count = 0; count < toAdd.length; count++) {
-                        toAdd[count] = suggestionViewDecorer.getSuggestionView(mContext);
-                    }
-                } else if (n < 0) {
-                    toAdd = null;
-                    toRecycle = new TextView[suggestions.length];
-                    System.arraycopy(existingViews, 0, toRecycle, 0, toRecycle.length);
-                }
+            if (request != lastSuggestionRequest) {
+                return;
+            }
 
-                if (Thread.interrupted()) {
-                    suggestionRunnable.interrupt();
-                    return;
+            int n = suggestions.length - existingViews.length;
+            TextView[] toAdd = null;
+            TextView[] toRecycle = null;
+            if (n == 0) {
+                toRecycle = existingViews;
+                toAdd = null;
+            } else if (n > 0) {
+                toRecycle = existingViews;
+                toAdd = new TextView[n];
+                for (int count = 0; count < toAdd.length; count++) {
+                    toAdd[count] = suggestionViewDecorer.getSuggestionView(mContext);
                 }
+            } else if (n < 0) {
+                toAdd = null;
+                toRecycle = new TextView[suggestions.length];
+                System.arraycopy(existingViews, 0, toRecycle, 0, toRecycle.length);
+            }
 
-                suggestionRunnable.setN(n);
-                suggestionRunnable.setSuggestions(suggestions);
-                suggestionRunnable.setToAdd(toAdd);
-                suggestionRunnable.setToRecycle(toRecycle);
-                suggestionRunnable.reset();
-                ((Activity) mContext).runOnUiThread(suggestionRunnable);
+            if (request != lastSuggestionRequest) {
+                return;
             }
-        };
 
-        lastSuggestionThread.start();
-    }
+            suggestionRunnable.setN(n);
+            suggestionRunnable.setSuggestions(suggestions);
+            suggestionRunnable.setToAdd(toAdd);
+            suggestionRunnable.setToRecycle(toRecycle);
+            suggestionRunnable.reset();
+            ((Activity) mContext).runOnUiThread(suggestionRunnable);
+        }
+    };
 
     protected UIManager(ExecutePack info, final Context context, final ViewGroup rootView, final CommandExecuter tri, MainPack mainPack) {
 
@@ -628,6 +654,21 @@ public class UIManager implements OnTouchListener {
             inputView.addTextChangedListener(textWatcher);
 
             suggestionsManager = new SuggestionsManager();
+            suggestionsManager.setOnLateSuggestions(new Runnable() {
+                @Override
+                public void run() {
+//                    the same request, computed again to show what the slow providers found
+                    suggestionHandler.removeCallbacks(suggestionWorker);
+                    suggestionHandler.post(suggestionWorker);
+                }
+            });
+
+            suggestionThread = new HandlerThread("suggestions");
+            suggestionThread.start();
+            suggestionHandler = new Handler(suggestionThread.getLooper());
+
+            suggestionDebounce = XMLPrefsManager.get(int.class, XMLPrefsManager.Suggestions.suggestions_debounce);
+            if(suggestionDebounce < 0) suggestionDebounce = 0;
 
             this.suggestionViewDecorer = new SuggestionViewDecorer() {
                 @Override
@@ -791,6 +832,30 @@ public class UIManager implements OnTouchListener {
         closeKeyboard();
     }
 
+//    the pool of the providers is shut down on the suggestions thread, after the request which could be using it
+    public void destroy() {
+        if(suggestionThread == null) return;
+
+        suggestionHandler.removeCallbacks(suggestionWorker);
+        suggestionHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                suggestionsManager.dispose();
+            }
+        });
+
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            suggestionThread.quitSafely();
+        } else {
+            suggestionHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    suggestionThread.quit();
+                }
+            });
+        }
+    }
+
     @Override
     public boolean onTouch(View v, MotionEvent event) {
         if (verifyDoubleTap(event)) {
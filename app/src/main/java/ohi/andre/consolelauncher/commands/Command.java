@@ -70,11 +70,12 @@ public class Command {
             return 0;
         }
 
-        try {
-            return args[useParamArgs ? nArgs - 1 : nArgs];
-        } catch (ArrayIndexOutOfBoundsException e) {
-            nArgs -= 1;
-            return nextArg();
-        }
+//        when there are more args than expected, the last type is repeated. nArgs isn't touched, the same Command
+//        can be asked again (SuggestionsManager keeps the last one it parsed)
+        int index = useParamArgs ? nArgs - 1 : nArgs;
+        if(index >= args.length) index = args.length - 1;
+        if(index < 0) index = 0;
+
+        return args[index];
     }
 }
@@ -2,80 +2,82 @@ package ohi.andre.consolelauncher.commands;
 
 import android.content.Context;
 
-import java.io.IOException;
-import java.lang.reflect.Constructor;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-import ohi.andre.consolelauncher.tuils.Tuils;
+import ohi.andre.consolelauncher.tuils.FuzzyMatcher;
+
+/**
+ * The commands of a package. Their names come from CommandRegistry, which is generated at build time from the
+ * classes in the package (see app/build.gradle), and each command is created the first time it's used
+ */
 
 public class CommandGroup {
 
     private String packageName;
-    private CommandAbstraction[] commands;
+//    sorted, so the names with a prefix are a range found by binary search
     private String[] commandNames;
+    private Map<String, Integer> indexes = Collections.emptyMap();
+    private CommandAbstraction[] commands;
+    private List<FuzzyMatcher.Candidate> candidates = new ArrayList<>(0);
 
     public CommandGroup(Context c, String packageName) {
         this.packageName = packageName;
 
-        List<String> cmds;
-        try {
-            cmds = Tuils.getClassesInPackage(packageName, c);
-        } catch (IOException e) {
+        String[] names = CommandRegistry.names(packageName);
+        if(names == null) {
             return;
         }
 
-        List<CommandAbstraction> cmdAbs = new ArrayList<>();
-        Iterator<String> iterator = cmds.iterator();
-        while (iterator.hasNext()) {
-            String s = iterator.next();
-            CommandAbstraction ca = buildCommand(s);
-            if(ca != null) {
-                cmdAbs.add(ca);
-            } else {
-                iterator.remove();
-            }
-        }
+        commandNames = names.clone();
+        Arrays.sort(commandNames);
+
+        Map<String, Integer> map = new HashMap<>();
+        for(int count = 0; count < commandNames.length; count++) map.put(commandNames[count], count);
+        indexes = Collections.unmodifiableMap(map);
 
-        Collections.sort(cmds);
-        commandNames = new String[cmds.size()];
-        cmds.toArray(commandNames);
-        commands = new CommandAbstraction[cmdAbs.size()];
-        cmdAbs.toArray(commands);
+        commands = new CommandAbstraction[commandNames.length];
+        candidates = FuzzyMatcher.candidates(commandNames);
     }
 
     public CommandAbstraction getCommandByName(String name) {
-        for(CommandAbstraction c : commands) {
-            if(c.getClass().getName().endsWith(Tuils.DOT.concat(name))) {
-                return c;
-            }
+        Integer index = indexes.get(name);
+        if(index == null) {
+            return null;
         }
 
-        return null;
-    }
-
-    private CommandAbstraction buildCommand(String name) {
-        String fullCmdName = packageName + Tuils.DOT + name;
-        try {
-            Class<CommandAbstraction> clazz = (Class<CommandAbstraction>) Class.forName(fullCmdName);
-            if(CommandAbstraction.class.isAssignableFrom(clazz)) {
-                Constructor<CommandAbstraction> constructor = clazz.getConstructor();
-                return constructor.newInstance();
+        synchronized (commands) {
+            if(commands[index] == null) {
+                commands[index] = CommandRegistry.create(packageName, name);
             }
-            return null;
-        } catch (Exception e) {
-            return null;
+            return commands[index];
         }
     }
 
-    public CommandAbstraction[] getCommands() {
-        return commands;
-    }
-
     public String[] getCommandNames() {
         return commandNames;
     }
 
+    public List<String> getCommandNames(String prefix) {
+        if(commandNames == null) return new ArrayList<>(0);
+
+        prefix = prefix.trim();
+
+        int from = Arrays.binarySearch(commandNames, prefix);
+        if(from < 0) from = -from - 1;
+
+        int to = from;
+        while(to < commandNames.length && commandNames[to].startsWith(prefix)) to++;
+
+        return Arrays.asList(commandNames).subList(from, to);
+    }
+
+    public List<FuzzyMatcher.Candidate> getCandidates() {
+        return candidates;
+    }
+
 }
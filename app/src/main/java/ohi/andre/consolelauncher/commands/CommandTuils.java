@@ -4,6 +4,7 @@ import android.annotation.SuppressLint;
 import android.graphics.Color;
 
 import java.io.File;
+import java.io.FilenameFilter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -13,6 +14,7 @@ import ohi.andre.consolelauncher.commands.main.Param;
 import ohi.andre.consolelauncher.commands.specific.ParamCommand;
 import ohi.andre.consolelauncher.managers.AppsManager;
 import ohi.andre.consolelauncher.managers.ContactManager;
+import ohi.andre.consolelauncher.managers.DirCache;
 import ohi.andre.consolelauncher.managers.FileManager;
 import ohi.andre.consolelauncher.managers.FileManager.DirInfo;
 import ohi.andre.consolelauncher.managers.music.MusicManager;
@@ -307,14 +309,19 @@ public class CommandTuils {
             return null;
         }
 
+        File[] content = DirCache.listFiles(cd);
+        if(content == null) {
+            return null;
+        }
+
         if (info.allExtensions && info.allNames) {
-            files = Arrays.asList(cd.listFiles());
+            files = new ArrayList<>(Arrays.asList(content));
         } else if(info.allNames) {
             extensionFileFilter.setExtension(info.extension);
-            files = Arrays.asList(cd.listFiles(extensionFileFilter));
+            files = filter(cd, content, extensionFileFilter);
         } else if(info.allExtensions) {
             nameFileFilter.setName(info.name);
-            files = Arrays.asList(cd.listFiles(nameFileFilter));
+            files = filter(cd, content, nameFileFilter);
         } else {
             return null;
         }
@@ -326,6 +333,16 @@ public class CommandTuils {
         }
     }
 
+    private static List<File> filter(File dir, File[] content, FilenameFilter filter) {
+        List<File> files = new ArrayList<>();
+        for(File f : content) {
+            if(filter.accept(dir, f.getName())) {
+                files.add(f);
+            }
+        }
+        return files;
+    }
+
     private static ArgInfo param(MainPack pack, ParamCommand cmd, String input) {
         if(input == null || input.trim().length() == 0) return null;
 
@@ -368,8 +385,10 @@ public class CommandTuils {
 
         if (Tuils.isNumber(input))
             number = input;
-        else
+        else {
             number = contacts.findNumber(input, MIN_CONTACT_RATE);
+            if(number == null) number = contacts.findNumberWithTypos(input);
+        }
 
         return new ArgInfo(number, null, number != null, 1);
     }
@@ -125,6 +125,11 @@ public class MainPack extends ExecutePack {
         return su;
     }
 
+//    unlike getSu, doesn't consume the permission
+    public boolean isSu() {
+        return canUseSu;
+    }
+
     public void setSu(boolean su) {
         this.canUseSu = su;
     }
@@ -144,6 +149,9 @@ public class MainPack extends ExecutePack {
     }
 
     public void dispose() {
+        appsManager.flushLaunches(false);
+        XMLPrefsManager.flush();
+
         if (this.camera == null || this.isFlashOn)
             return;
 
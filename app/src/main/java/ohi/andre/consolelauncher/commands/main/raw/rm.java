@@ -9,6 +9,7 @@ import ohi.andre.consolelauncher.R;
 import ohi.andre.consolelauncher.commands.CommandAbstraction;
 import ohi.andre.consolelauncher.commands.ExecutePack;
 import ohi.andre.consolelauncher.commands.main.MainPack;
+import ohi.andre.consolelauncher.managers.DirCache;
 import ohi.andre.consolelauncher.managers.FileManager;
 
 /**
@@ -25,6 +26,11 @@ public class rm implements CommandAbstraction {
         args.toArray(files);
 
         int result = FileManager.rm(files, info.getSu());
+        for(File f : files) {
+            DirCache.invalidate(f.getParentFile());
+            DirCache.invalidate(f);
+        }
+
         switch (result) {
             case FileManager.ISFILE:
                 return info.res.getString(R.string.output_isfile);
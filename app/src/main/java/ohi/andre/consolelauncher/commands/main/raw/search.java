@@ -9,13 +9,13 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
-import ohi.andre.comparestring.Compare;
 import ohi.andre.consolelauncher.R;
 import ohi.andre.consolelauncher.commands.CommandAbstraction;
 import ohi.andre.consolelauncher.commands.ExecutePack;
 import ohi.andre.consolelauncher.commands.main.MainPack;
 import ohi.andre.consolelauncher.commands.specific.ParamCommand;
 import ohi.andre.consolelauncher.managers.FileManager;
+import ohi.andre.consolelauncher.tuils.FuzzyMatcher;
 import ohi.andre.consolelauncher.tuils.Tuils;
 import ohi.andre.consolelauncher.tuils.interfaces.Outputable;
 
@@ -177,7 +177,7 @@ public class search extends ParamCommand {
                 super.run();
 
                 String name = Tuils.toPlanString(args);
-                List<String> paths = rightPaths(cd, name, FileManager.USE_SCROLL_COMPARE);
+                List<String> paths = rightPaths(cd, new FuzzyMatcher.Query(name), FileManager.USE_SCROLL_COMPARE);
                 if(paths.size() == 0) {
                     outputable.onOutput(res.getString(R.string.output_nothing_found));
                 } else {
@@ -189,7 +189,7 @@ public class search extends ParamCommand {
         return Tuils.EMPTYSTRING;
     }
 
-    private static List<String> rightPaths(File dir, String name, boolean scrollCompare) {
+    private static List<String> rightPaths(File dir, FuzzyMatcher.Query name, boolean scrollCompare) {
         File[] files = dir.listFiles();
         List<String> rightPaths = new ArrayList<>(files.length);
 
@@ -208,12 +208,8 @@ public class search extends ParamCommand {
         return rightPaths;
     }
 
-    private static boolean fileMatch(File f, String name, boolean scrollCompare) {
-        if (scrollCompare) {
-            return Compare.scrollComparison(f.getName(), name) >= MIN_FILE_RATE;
-        } else {
-            return Compare.linearComparison(f.getName(), name) >= MIN_FILE_RATE;
-        }
+    private static boolean fileMatch(File f, FuzzyMatcher.Query name, boolean scrollCompare) {
+        return FuzzyMatcher.rate(f.getName(), name, scrollCompare) >= MIN_FILE_RATE;
     }
 
     private static String youTube(List<String> args, Context c) {
@@ -12,6 +12,7 @@ import ohi.andre.consolelauncher.commands.tuixt.TuixtActivity;
 import ohi.andre.consolelauncher.commands.CommandAbstraction;
 import ohi.andre.consolelauncher.commands.ExecutePack;
 import ohi.andre.consolelauncher.commands.main.MainPack;
+import ohi.andre.consolelauncher.managers.DirCache;
 import ohi.andre.consolelauncher.managers.FileManager;
 import ohi.andre.consolelauncher.tuils.Tuils;
 
@@ -75,8 +76,14 @@ public class tuixt implements CommandAbstraction {
         FileManager.DirInfo dirInfo = FileManager.cd(info.currentDirectory, path);
 
         File file = new File(dirInfo.getCompletePath());
-        if(!file.getParentFile().exists() && !file.getParentFile().mkdirs()) {
-            return info.res.getString(R.string.output_error);
+        File parent = file.getParentFile();
+        if(!parent.exists()) {
+            if(!parent.mkdirs()) {
+                return info.res.getString(R.string.output_error);
+            }
+
+//            mkdirs could have created more than one of them
+            for(File dir = parent.getParentFile(); dir != null; dir = dir.getParentFile()) DirCache.invalidate(dir);
         }
 
         try {
@@ -84,6 +91,7 @@ public class tuixt implements CommandAbstraction {
         } catch (IOException e) {
             return e.toString();
         }
+        DirCache.invalidate(parent);
 
         Intent intent = new Intent(info.context, TuixtActivity.class);
         intent.putExtra(TuixtActivity.PATH, file.getAbsolutePath());
@@ -15,6 +15,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import ohi.andre.consolelauncher.tuils.PrefixIndex;
 import ohi.andre.consolelauncher.tuils.Tuils;
 import ohi.andre.consolelauncher.tuils.interfaces.Reloadable;
 
@@ -23,6 +24,7 @@ public class AliasManager implements Reloadable {
     public static final String PATH = "alias.txt";
 
     private Map<String, String> aliases;
+    private PrefixIndex<String> aliasesIndex = new PrefixIndex<>(false);
 
     public AliasManager() {
         reload();
@@ -45,6 +47,7 @@ public class AliasManager implements Reloadable {
     public void reload() {
         if(aliases != null) aliases.clear();
         else aliases = new HashMap();
+        aliasesIndex.clear();
 
         File file = new File(Tuils.getFolder(), PATH);
 
@@ -57,7 +60,7 @@ public class AliasManager implements Reloadable {
             while((line = reader.readLine()) != null) {
                 String[] splatted = line.split("=");
                 if(splatted.length < 2) continue;
-                aliases.put(splatted[0], splatted[1]);
+                if(aliases.put(splatted[0], splatted[1]) == null) aliasesIndex.add(splatted[0], splatted[0]);
             }
         } catch (Exception e) {}
     }
@@ -71,7 +74,7 @@ public class AliasManager implements Reloadable {
             fos.write((Tuils.NEWLINE + name + "=" + value).getBytes());
             fos.close();
 
-            aliases.put(name, value);
+            if(aliases.put(name, value) == null) aliasesIndex.add(name, name);
             return true;
         } catch (Exception e) {
             return false;
@@ -99,7 +102,7 @@ public class AliasManager implements Reloadable {
             reader.close();
 
 
-            aliases.remove(name);
+            if(aliases.remove(name) != null) aliasesIndex.remove(name, name);
 
             return tempFile.renameTo(inputFile);
         } catch (Exception e) {
@@ -111,4 +114,12 @@ public class AliasManager implements Reloadable {
         if(aliases == null) return new ArrayList<>(0);
         return new ArrayList<>(aliases.keySet());
     }
+
+    public List<String> getAliases(String prefix) {
+        return aliasesIndex.prefixed(prefix);
+    }
+
+    public int getAliasesVersion() {
+        return aliasesIndex.version();
+    }
 }
@@ -14,38 +14,40 @@ import android.content.pm.ResolveInfo;
 import android.content.pm.ServiceInfo;
 import android.os.AsyncTask;
 import android.os.Build;
-import android.support.annotation.NonNull;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import android.os.Handler;
+import android.os.Looper;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-
 import ohi.andre.comparestring.Compare;
 import ohi.andre.consolelauncher.R;
+import ohi.andre.consolelauncher.tuils.FuzzyMatcher;
+import ohi.andre.consolelauncher.tuils.IndexedHeap;
+import ohi.andre.consolelauncher.tuils.PrefixIndex;
 import ohi.andre.consolelauncher.tuils.TimeManager;
+import ohi.andre.consolelauncher.tuils.TypoIndex;
 import ohi.andre.consolelauncher.tuils.Tuils;
 import ohi.andre.consolelauncher.tuils.interfaces.Outputable;
 import ohi.andre.consolelauncher.tuils.interfaces.Suggester;
 
 import static ohi.andre.consolelauncher.managers.XMLPrefsManager.VALUE_ATTRIBUTE;
-import static ohi.andre.consolelauncher.managers.XMLPrefsManager.resetFile;
 import static ohi.andre.consolelauncher.managers.XMLPrefsManager.set;
-import static ohi.andre.consolelauncher.managers.XMLPrefsManager.writeTo;
 
 public class AppsManager implements XMLPrefsManager.XmlPrefsElement {
 
@@ -59,12 +61,15 @@ public class AppsManager implements XMLPrefsManager.XmlPrefsElement {
 
     private final String SHOW_ATTRIBUTE = "show";
 
+    private final String SNAPSHOT = "apps.snapshot";
+
     private Context context;
     private PackageManager pkgManager;
     private File folder;
 
     private AppsHolder appsHolder;
     private List<LaunchInfo> hiddenApps;
+    private AppsIndex hiddenIndex = new AppsIndex();
 
     private Outputable outputable;
 
@@ -76,6 +81,34 @@ public class AppsManager implements XMLPrefsManager.XmlPrefsElement {
 
     private XMLPrefsManager.XMLPrefsList defaultApps;
 
+//    launch counters and frecency events are written in batches: FLUSH_DELAY ms after the first launch, as soon as
+//    FLUSH_THRESHOLD launches are pending, or when the launcher is paused
+    private final int FLUSH_DELAY = 30 * 1000, FLUSH_THRESHOLD = 10;
+//    prefs key -> launch count
+    private final Map<String, Integer> pendingLaunches = new HashMap<>();
+//    one for each launch, in order: the prefs key and the time
+    private final List<String> pendingKeys = new ArrayList<>();
+    private final List<Long> pendingTimes = new ArrayList<>();
+    private Handler handler = new Handler(Looper.getMainLooper());
+    private Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flushLaunches(false);
+        }
+    };
+
+//    snapshots are written in order, out of the main thread. A burst of package broadcasts (e.g. the updates of the
+//    store) is written once, SNAPSHOT_DELAY ms after the first of them
+    private ExecutorService snapshotWriter = Executors.newSingleThreadExecutor();
+    private final int SNAPSHOT_DELAY = 5 * 1000;
+    private final AtomicBoolean snapshotScheduled = new AtomicBoolean();
+    private Runnable snapshotRunnable = new Runnable() {
+        @Override
+        public void run() {
+            saveSnapshot(false);
+        }
+    };
+
     public enum Options implements XMLPrefsManager.XMLPrefsSave {
 
         default_app_n1 {
@@ -140,7 +173,7 @@ public class AppsManager implements XMLPrefsManager.XmlPrefsElement {
 
     @Override
     public void write(XMLPrefsManager.XMLPrefsSave save, String value) {
-        set(new File(Tuils.getFolder(), PATH), NAME, save.label(), new String[] {VALUE_ATTRIBUTE}, new String[] {value});
+        if(set(new File(Tuils.getFolder(), PATH), NAME, save.label(), new String[] {VALUE_ATTRIBUTE}, new String[] {value}) == null && defaultApps != null) defaultApps.set(save, value);
     }
 
     @Override
@@ -153,10 +186,13 @@ public class AppsManager implements XMLPrefsManager.XmlPrefsElement {
         public void onReceive(Context context, Intent intent) {
             String action = intent.getAction();
             String data = intent.getData().getSchemeSpecificPart();
+//            an update sends REMOVED and then ADDED, both with EXTRA_REPLACING: the app is kept and only its label is checked
+            boolean replacing = intent.getBooleanExtra(Intent.EXTRA_REPLACING, false);
             if (action.equals(Intent.ACTION_PACKAGE_ADDED)) {
-                appInstalled(data);
+                if(replacing) appUpdated(data);
+                else appInstalled(data);
             }
-            else {
+            else if(!replacing) {
                 appUninstalled(data);
             }
         }
@@ -176,15 +212,25 @@ public class AppsManager implements XMLPrefsManager.XmlPrefsElement {
         this.folder = Tuils.getFolder();
         initAppListener(context);
 
-        new AsyncTask<Void,Void,Void>() {
+        new AsyncTask<Void,Void,Reconciliation>() {
             @Override
-            protected Void doInBackground(Void... params) {
-                fill();
-                return null;
+            protected Reconciliation doInBackground(Void... params) {
+                List<AppsSnapshot.Entry> snapshot = fill(true);
+                if(snapshot == null) return null;
+
+//                the apps of the snapshot can be used right now, what changed since it was taken is applied later
+                publishProgress();
+                return reconcile(snapshot);
             }
 
             @Override
-            protected void onPostExecute(Void aVoid) {
+            protected void onProgressUpdate(Void... values) {
+                s.requestUpdate();
+            }
+
+            @Override
+            protected void onPostExecute(Reconciliation r) {
+                if(r != null) apply(r);
                 s.requestUpdate();
             }
         }.execute();
@@ -200,170 +246,327 @@ public class AppsManager implements XMLPrefsManager.XmlPrefsElement {
     }
 
     public void fill() {
-        List<LaunchInfo> allApps = createAppMap(context.getPackageManager());
-        hiddenApps = new ArrayList<>();
-
-        Map<String, XMLPrefsManager.XMLPrefsSave> replacedValues = new HashMap<>();
-        for(XMLPrefsManager.XMLPrefsSave s : Options.values()) {
-            String r = s.hasReplaced();
-            if(r != null) replacedValues.put(r, s);
-        }
+        fill(false);
+    }
 
-        defaultApps = new XMLPrefsManager.XMLPrefsList();
+//    returns the snapshot the apps were loaded from, null if they were loaded from the PackageManager
+    private List<AppsSnapshot.Entry> fill(boolean useSnapshot) {
+        List<AppsSnapshot.Entry> snapshot = useSnapshot ? AppsSnapshot.read(snapshotFile(), locale()) : null;
 
-        try {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder builder = factory.newDocumentBuilder();
+        List<LaunchInfo> allApps;
+        hiddenApps = new ArrayList<>();
 
-            File file = new File(folder, PATH);
-            if(!file.exists() && !file.createNewFile()) return;
+        if(snapshot != null) {
+            allApps = new ArrayList<>(snapshot.size());
+            for(AppsSnapshot.Entry e : snapshot) {
+                LaunchInfo info = new LaunchInfo(e.packageName, e.activityName, e.label);
+                info.launchedTimes = e.launchedTimes;
+                info.lastUpdateTime = e.lastUpdateTime;
 
-            Document d;
-            try {
-                d = builder.parse(file);
-            } catch (Exception e) {
-                resetFile(file, NAME);
-                d = builder.parse(file);
+//                apps.xml decides which apps are hidden, it could have been edited by hand since the snapshot was taken
+                allApps.add(info);
             }
+        } else {
+            allApps = createAppMap(pkgManager);
+        }
 
-            List<AppsManager.Options> enums = new ArrayList<>(Arrays.asList(AppsManager.Options.values()));
+        defaultApps = new XMLPrefsManager.XMLPrefsList();
 
-            Element root = (Element) d.getElementsByTagName(NAME).item(0);
-            if(root == null) {
-                resetFile(file, NAME);
+        XMLPrefsManager.flush();
 
-                d = builder.parse(file);
-                root = (Element) d.getElementsByTagName(NAME).item(0);
-            }
-
-            NodeList nodes = root.getElementsByTagName("*");
-            for(int count = 0; count < nodes.getLength(); count++) {
-                Node node = nodes.item(count);
+        final List<LaunchInfo> apps = allApps;
+        XMLPrefsLoader.NodeListener listener = new XMLPrefsLoader.NodeListener() {
+            @Override
+            public void onNode(XMLPrefsLoader.Node node) {
+                boolean shown = !node.has(SHOW_ATTRIBUTE) || Boolean.parseBoolean(node.get(SHOW_ATTRIBUTE));
+                if(shown) return;
 
-                String nn = node.getNodeName();
-                int nodeIndex = Tuils.find(nn, (List) enums);
-                if(nodeIndex != -1) {
-                    defaultApps.add(nn, node.getAttributes().getNamedItem(VALUE_ATTRIBUTE).getNodeValue());
+                ComponentName name = null;
 
-                    for(int en = 0; en < enums.size(); en++) {
-                        if(enums.get(en).label().equals(nn)) {
-                            enums.remove(en);
-                            break;
+                String[] split = node.name.split("-");
+                if(split.length >= 2) {
+                    name = new ComponentName(split[0], split[1]);
+                } else if(split.length == 1) {
+                    if(split[0].contains("Activity")) {
+                        for(LaunchInfo i : apps) {
+                            if(i.componentName.getClassName().equals(split[0])) name = i.componentName;
                         }
-                    }
-                } else if(replacedValues.containsKey(nn)) {
-                    XMLPrefsManager.XMLPrefsSave s = replacedValues.remove(nn);
-
-                    Element e = (Element) node;
-                    String oldValue = e.hasAttribute(VALUE_ATTRIBUTE) ? e.getAttribute(VALUE_ATTRIBUTE) : null;
-                    root.removeChild(e);
-
-                    replacedValues.put(oldValue, s);
-                }
-//                todo support delete
-                else {
-                    if(node.getNodeType() == Node.ELEMENT_NODE) {
-                        Element e = (Element) node;
-
-                        boolean shown = !e.hasAttribute(SHOW_ATTRIBUTE) || Boolean.parseBoolean(e.getAttribute(SHOW_ATTRIBUTE));
-                        if(!shown) {
-                            ComponentName name = null;
-
-                            String[] split = nn.split("-");
-                            if(split.length >= 2) {
-                                name = new ComponentName(split[0], split[1]);
-                            } else if(split.length == 1) {
-                                if(split[0].contains("Activity")) {
-                                    for(LaunchInfo i : allApps) {
-                                        if(i.componentName.getClassName().equals(split[0])) name = i.componentName;
-                                    }
-                                } else {
-                                    for(LaunchInfo i : allApps) {
-                                        if(i.componentName.getPackageName().equals(split[0])) name = i.componentName;
-                                    }
-                                }
-                            }
-
-                            if(name == null) continue;
-
-                            LaunchInfo removed = AppUtils.findLaunchInfoWithComponent(allApps, name);
-                            if(removed != null) {
-                                allApps.remove(removed);
-                                hiddenApps.add(removed);
-                            }
+                    } else {
+                        for(LaunchInfo i : apps) {
+                            if(i.componentName.getPackageName().equals(split[0])) name = i.componentName;
                         }
                     }
                 }
-            }
-
-            if(enums.size() > 0) {
-                Set<Map.Entry<String, XMLPrefsManager.XMLPrefsSave>> es = replacedValues.entrySet();
-                for(XMLPrefsManager.XMLPrefsSave s : enums) {
-                    String value = null;
-                    for(Map.Entry<String, XMLPrefsManager.XMLPrefsSave> e : es) {
-                        if(e.getValue().equals(s)) value = e.getKey();
-                    }
-                    if(value == null) value = s.defaultValue();
 
-                    Element em = d.createElement(s.label());
-                    em.setAttribute(VALUE_ATTRIBUTE, value);
-                    root.appendChild(em);
+                if(name == null) return;
 
-                    defaultApps.add(s.label(), value);
+                LaunchInfo removed = AppUtils.findLaunchInfoWithComponent(apps, name);
+                if(removed != null) {
+                    apps.remove(removed);
+                    hiddenApps.add(removed);
                 }
-                writeTo(d, file);
             }
+        };
+
+        try {
+            XMLPrefsLoader.load(new File(folder, PATH), NAME, Options.values(), deleted(), defaultApps, listener);
         } catch (Exception e) {
             Tuils.write(Tuils.getStackTrace(e));
         }
 
-        for(Map.Entry<String, ?> entry : this.preferences.getAll().entrySet()) {
-            Object value = entry.getValue();
-            if (value instanceof Integer) {
-                ComponentName name = null;
-
-                String[] split = entry.getKey().split("-");
-                if(split.length >= 2) {
-                    name = new ComponentName(split[0], split[1]);
-                } else if(split.length == 1) {
-                    if(split[0].contains("Activity")) {
-                        for(LaunchInfo i : allApps) {
-                            if(i.componentName.getClassName().equals(split[0])) name = i.componentName;
-                        }
-                    } else {
-                        for(LaunchInfo i : allApps) {
-                            if(i.componentName.getPackageName().equals(split[0])) name = i.componentName;
+//        launch counts are in the snapshot too
+        if(snapshot == null) {
+            for(Map.Entry<String, ?> entry : this.preferences.getAll().entrySet()) {
+                Object value = entry.getValue();
+                if (value instanceof Integer) {
+                    ComponentName name = null;
+
+                    String[] split = entry.getKey().split("-");
+                    if(split.length >= 2) {
+                        name = new ComponentName(split[0], split[1]);
+                    } else if(split.length == 1) {
+                        if(split[0].contains("Activity")) {
+                            for(LaunchInfo i : allApps) {
+                                if(i.componentName.getClassName().equals(split[0])) name = i.componentName;
+                            }
+                        } else {
+                            for(LaunchInfo i : allApps) {
+                                if(i.componentName.getPackageName().equals(split[0])) name = i.componentName;
+                            }
                         }
                     }
-                }
 
-                if(name == null) continue;
+                    if(name == null) continue;
 
-                LaunchInfo info = AppUtils.findLaunchInfoWithComponent(allApps, name);
-                if(info != null) info.launchedTimes = (Integer) value;
+                    LaunchInfo info = AppUtils.findLaunchInfoWithComponent(allApps, name);
+                    if(info != null) info.launchedTimes = (Integer) value;
+                }
             }
         }
 
+        for(LaunchInfo info : allApps) info.frecency = FrecencyManager.seed(FrecencyManager.APP, info.prefsKey(), info.launchedTimes);
+
         appsHolder = new AppsHolder(allApps, defaultApps);
         AppUtils.checkEquality(hiddenApps);
+        hiddenIndex.rebuild(hiddenApps);
+
+        if(snapshot == null) saveSnapshot();
+        return snapshot;
     }
 
     private List<LaunchInfo> createAppMap(PackageManager mgr) {
+        long start = System.currentTimeMillis();
+
         List<LaunchInfo> infos = new ArrayList<>();
 
+        List<ResolveInfo> main = queryLaunchers(mgr);
+        if(main == null) return infos;
+
+        Map<String, Long> updateTimes = updateTimes(mgr);
+        String[] labels = loadLabels(mgr, main);
+        for (int count = 0; count < main.size(); count++) {
+            ResolveInfo ri = main.get(count);
+
+            LaunchInfo info = new LaunchInfo(ri.activityInfo.packageName, ri.activityInfo.name, labels[count]);
+            info.lastUpdateTime = lastUpdateTime(updateTimes, info.componentName.getPackageName());
+            infos.add(info);
+        }
+
+        Tuils.log("apps: " + infos.size() + " activities enumerated in " + (System.currentTimeMillis() - start) + "ms");
+        return infos;
+    }
+
+//    loadLabel is an IPC for each activity, so labels are loaded by up to one thread for each core.
+//    labels[i] is the label of infos.get(i)
+    private String[] loadLabels(final PackageManager mgr, final List<ResolveInfo> infos) {
+        final String[] labels = new String[infos.size()];
+        final AtomicInteger next = new AtomicInteger();
+
+        Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                for(int count = next.getAndIncrement(); count < labels.length; count = next.getAndIncrement()) {
+                    ResolveInfo ri = infos.get(count);
+                    try {
+                        labels[count] = ri.loadLabel(mgr).toString();
+                    } catch (Exception e) {
+                        labels[count] = ri.activityInfo.name;
+                    }
+                }
+            }
+        };
+
+        int threads = Math.min(Runtime.getRuntime().availableProcessors(), labels.length);
+        if(threads <= 1) {
+            worker.run();
+            return labels;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>(threads);
+        for(int count = 0; count < threads; count++) futures.add(pool.submit(worker));
+
+        try {
+            for(Future<?> f : futures) f.get();
+        } catch (Exception e) {
+            Tuils.log(e);
+        }
+        pool.shutdown();
+
+//        if a worker was interrupted, what's left is loaded here
+        worker.run();
+
+        return labels;
+    }
+
+    private List<ResolveInfo> queryLaunchers(PackageManager mgr) {
         Intent i = new Intent(Intent.ACTION_MAIN);
         i.addCategory(Intent.CATEGORY_LAUNCHER);
 
-        List<ResolveInfo> main;
         try {
-            main = mgr.queryIntentActivities(i, 0);
+            return mgr.queryIntentActivities(i, 0);
         } catch (Exception e) {
-            return infos;
+            return null;
         }
+    }
 
-        for (ResolveInfo ri : main) infos.add(new LaunchInfo(ri.activityInfo.packageName, ri.activityInfo.name, ri.loadLabel(mgr).toString()));
+    private Map<String, Long> updateTimes(PackageManager mgr) {
+        Map<String, Long> times = new HashMap<>();
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.GINGERBREAD) return times;
 
-        return infos;
+        try {
+            for(PackageInfo info : mgr.getInstalledPackages(0)) times.put(info.packageName, info.lastUpdateTime);
+        } catch (Exception e) {}
+
+        return times;
+    }
+
+//    0 if unknown, in that case the label is always loaded again
+    private long lastUpdateTime(Map<String, Long> times, String packageName) {
+        Long time = times.get(packageName);
+        return time != null ? time : 0;
+    }
+
+    private static class Reconciliation {
+        List<ComponentName> removed = new ArrayList<>();
+        List<LaunchInfo> changed = new ArrayList<>();
+    }
+
+//    finds what changed since the snapshot was taken: only the labels of new or updated packages are loaded
+    private Reconciliation reconcile(List<AppsSnapshot.Entry> snapshot) {
+        List<ResolveInfo> main = queryLaunchers(pkgManager);
+        if(main == null) return null;
+
+        Map<ComponentName, AppsSnapshot.Entry> old = new HashMap<>();
+        for(AppsSnapshot.Entry e : snapshot) old.put(new ComponentName(e.packageName, e.activityName), e);
+
+        Map<String, Long> updateTimes = updateTimes(pkgManager);
+        Reconciliation r = new Reconciliation();
+
+        List<ResolveInfo> toLoad = new ArrayList<>();
+        for(ResolveInfo ri : main) {
+            String pkg = ri.activityInfo.packageName;
+            long time = lastUpdateTime(updateTimes, pkg);
+
+            AppsSnapshot.Entry e = old.remove(new ComponentName(pkg, ri.activityInfo.name));
+            if(e != null && time != 0 && e.lastUpdateTime == time) continue;
+
+            toLoad.add(ri);
+        }
+
+        String[] labels = loadLabels(pkgManager, toLoad);
+        for(int count = 0; count < toLoad.size(); count++) {
+            ResolveInfo ri = toLoad.get(count);
+
+            LaunchInfo info = new LaunchInfo(ri.activityInfo.packageName, ri.activityInfo.name, labels[count]);
+            info.lastUpdateTime = lastUpdateTime(updateTimes, ri.activityInfo.packageName);
+            r.changed.add(info);
+        }
+
+        r.removed.addAll(old.keySet());
+        return r;
+    }
+
+    private void apply(Reconciliation r) {
+        if(appsHolder == null) return;
+
+        for(ComponentName name : r.removed) {
+            LaunchInfo info = appsHolder.index.withComponent(name);
+            if(info != null) appsHolder.remove(info);
+
+            info = hiddenIndex.withComponent(name);
+            if(info != null) hiddenApps.remove(info);
+        }
+
+        for(LaunchInfo info : r.changed) {
+            LaunchInfo old = appsHolder.index.withComponent(info.componentName);
+            boolean hidden = false;
+            if(old == null) {
+                old = hiddenIndex.withComponent(info.componentName);
+                hidden = old != null;
+            }
+
+            if(old == null) {
+                info.frecency = FrecencyManager.score(FrecencyManager.APP, info.prefsKey());
+                appsHolder.add(info);
+                continue;
+            }
+
+            old.lastUpdateTime = info.lastUpdateTime;
+            if(info.loadedLabel.equals(old.loadedLabel)) continue;
+
+            info.launchedTimes = old.launchedTimes;
+            info.frecency = old.frecency;
+            if(hidden) {
+                hiddenApps.set(hiddenApps.indexOf(old), info);
+                AppUtils.checkEquality(hiddenApps);
+            } else {
+                appsHolder.remove(old);
+                appsHolder.add(info);
+            }
+        }
+
+        hiddenIndex.rebuild(hiddenApps);
+
+        if(r.removed.size() > 0 || r.changed.size() > 0) saveSnapshot();
+    }
+
+    private File snapshotFile() {
+        return new File(context.getCacheDir(), SNAPSHOT);
+    }
+
+//    labels are translated, a snapshot is valid only with the locale it was taken with
+    private String locale() {
+        return Locale.getDefault().toString();
+    }
+
+    private void saveSnapshot() {
+        if(snapshotScheduled.compareAndSet(false, true)) handler.postDelayed(snapshotRunnable, SNAPSHOT_DELAY);
+    }
+
+    private void saveSnapshot(boolean now) {
+        handler.removeCallbacks(snapshotRunnable);
+        snapshotScheduled.set(false);
+
+        if(appsHolder == null) return;
+
+        final List<AppsSnapshot.Entry> entries = new ArrayList<>();
+        for(LaunchInfo info : appsHolder.getApps()) entries.add(info.snapshotEntry(false));
+        for(LaunchInfo info : hiddenApps) entries.add(info.snapshotEntry(true));
+
+        final File file = snapshotFile();
+        final String locale = locale();
+        if(now) {
+            AppsSnapshot.write(file, locale, entries);
+            return;
+        }
+
+        snapshotWriter.execute(new Runnable() {
+            @Override
+            public void run() {
+                AppsSnapshot.write(file, locale, entries);
+            }
+        });
     }
 
     private void appInstalled(String packageName) {
@@ -378,39 +581,122 @@ public class AppsManager implements XMLPrefsManager.XmlPrefsElement {
             String label = manager.getActivityInfo(name, 0).loadLabel(manager).toString();
 
             LaunchInfo app = new LaunchInfo(packageName, activity, label);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.GINGERBREAD) {
+                app.lastUpdateTime = manager.getPackageInfo(packageName, 0).lastUpdateTime;
+            }
+            app.frecency = FrecencyManager.score(FrecencyManager.APP, app.prefsKey());
             appsHolder.add(app);
+            saveSnapshot();
 
             outputable.onOutput(context.getString(R.string.app_installed) + Tuils.SPACE + packageName);
         } catch (NameNotFoundException e) {}
     }
 
+    private void appUpdated(String packageName) {
+        if(appsHolder == null) return;
+
+        PackageManager manager = context.getPackageManager();
+        long time = 0;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.GINGERBREAD) {
+            try {
+                time = manager.getPackageInfo(packageName, 0).lastUpdateTime;
+            } catch (NameNotFoundException e) {}
+        }
+
+        List<LaunchInfo> shown = appsHolder.index.withPackage(packageName);
+        List<LaunchInfo> hidden = hiddenIndex.withPackage(packageName);
+        boolean hiddenChanged = false;
+
+        for(int count = 0; count < shown.size() + hidden.size(); count++) {
+            boolean isHidden = count >= shown.size();
+            LaunchInfo info = isHidden ? hidden.get(count - shown.size()) : shown.get(count);
+
+            String label;
+            try {
+                label = manager.getActivityInfo(info.componentName, 0).loadLabel(manager).toString();
+            } catch (NameNotFoundException e) {
+//                the new version doesn't have this activity anymore
+                if(isHidden) {
+                    hiddenApps.remove(info);
+                    hiddenChanged = true;
+                } else {
+                    appsHolder.remove(info);
+                }
+                continue;
+            }
+
+            info.lastUpdateTime = time;
+            if(label.equals(info.loadedLabel)) continue;
+
+            if(isHidden) {
+                info.publicLabel = label;
+                info.loadedLabel = label;
+                hiddenChanged = true;
+            } else {
+                appsHolder.relabel(info, label);
+            }
+        }
+
+        if(hiddenChanged) {
+            AppUtils.checkEquality(hiddenApps);
+            hiddenIndex.rebuild(hiddenApps);
+        }
+
+//        the launcher activity may have changed
+        Intent i = manager.getLaunchIntentForPackage(packageName);
+        if(i != null && appsHolder.index.withComponent(i.getComponent()) == null && hiddenIndex.withComponent(i.getComponent()) == null) {
+            appInstalled(packageName);
+        } else {
+            saveSnapshot();
+        }
+    }
+
     private void appUninstalled(String packageName) {
-        List<LaunchInfo> infos = AppUtils.findLaunchInfosWithPackage(packageName, appsHolder.getApps());
+        List<LaunchInfo> infos = appsHolder.index.withPackage(packageName);
         for(LaunchInfo i : infos) appsHolder.remove(i);
+
+        List<LaunchInfo> hidden = hiddenIndex.withPackage(packageName);
+        for(LaunchInfo i : hidden) {
+            hiddenApps.remove(i);
+            hiddenIndex.remove(i);
+        }
+
+        if(infos.size() > 0 || hidden.size() > 0) saveSnapshot();
     }
 
     public LaunchInfo findLaunchInfoWithLabel(String label, int type) {
-        List<LaunchInfo> appList;
         if(type == SHOWN_APPS) {
-            appList = appsHolder.getApps();
+            if(appsHolder == null) return null;
+            return appsHolder.index.withLabel(label);
         } else {
-            appList = hiddenApps;
+            return hiddenIndex.withLabel(label);
         }
+    }
 
-        return AppUtils.findLaunchInfoWithLabel(appList, label);
+//    the shown app whose label is a few typos away from label, if there's only one
+    public LaunchInfo findLaunchInfoWithTypos(String label) {
+        if(appsHolder == null) return null;
+        return appsHolder.getTypoIndex().closest(label);
     }
 
     public Intent getIntent(LaunchInfo info) {
+        long now = System.currentTimeMillis();
+
         info.launchedTimes++;
+        info.frecency = FrecencyManager.use(FrecencyManager.APP, info.prefsKey(), now);
         appsHolder.requestSuggestionUpdate(info);
 
-        editor.putInt(info.componentName.getPackageName() + "-" + info.componentName.getClassName(), info.launchedTimes);
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.GINGERBREAD) {
-            editor.apply();
-        } else {
-            editor.commit();
+        int pending;
+        synchronized (pendingLaunches) {
+            pendingLaunches.put(info.prefsKey(), info.launchedTimes);
+            pendingKeys.add(info.prefsKey());
+            pendingTimes.add(now);
+            pending = pendingKeys.size();
         }
 
+        if(pending >= FLUSH_THRESHOLD) flushLaunches(false);
+        else if(pending == 1) handler.postDelayed(flushRunnable, FLUSH_DELAY);
+
         Intent intent = new Intent(Intent.ACTION_MAIN);
         intent.setComponent(info.componentName);
         intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
@@ -418,6 +704,32 @@ public class AppsManager implements XMLPrefsManager.XmlPrefsElement {
         return intent;
     }
 
+//    now = true writes on the calling thread, for when the process is about to die.
+//    SharedPreferences and the snapshot are both written to a temp file and renamed, a crash in the middle leaves the old values
+    public void flushLaunches(boolean now) {
+        handler.removeCallbacks(flushRunnable);
+
+        synchronized (pendingLaunches) {
+            if(pendingKeys.size() == 0) return;
+
+            for(Map.Entry<String, Integer> e : pendingLaunches.entrySet()) editor.putInt(e.getKey(), e.getValue());
+            pendingLaunches.clear();
+
+//            queued, FrecencyManager appends them out of the main thread
+            for(int count = 0; count < pendingKeys.size(); count++) FrecencyManager.save(FrecencyManager.APP, pendingKeys.get(count), pendingTimes.get(count));
+            pendingKeys.clear();
+            pendingTimes.clear();
+        }
+
+        if (!now && Build.VERSION.SDK_INT >= Build.VERSION_CODES.GINGERBREAD) {
+            editor.apply();
+        } else {
+            editor.commit();
+        }
+        if(now) FrecencyManager.flush();
+        saveSnapshot(now);
+    }
+
     public String hideActivity(LaunchInfo info) {
         set(new File(folder, PATH), NAME, info.componentName.getPackageName() + "-" + info.componentName.getClassName(), new String[] {SHOW_ATTRIBUTE}, new String[] {false + Tuils.EMPTYSTRING});
 
@@ -425,6 +737,8 @@ public class AppsManager implements XMLPrefsManager.XmlPrefsElement {
         appsHolder.update(true);
         hiddenApps.add(info);
         AppUtils.checkEquality(hiddenApps);
+        hiddenIndex.rebuild(hiddenApps);
+        saveSnapshot();
 
         return info.publicLabel;
     }
@@ -433,8 +747,10 @@ public class AppsManager implements XMLPrefsManager.XmlPrefsElement {
         set(new File(folder, PATH), NAME, info.componentName.getPackageName() + "-" + info.componentName.getClassName(), new String[] {SHOW_ATTRIBUTE}, new String[] {true + Tuils.EMPTYSTRING});
 
         hiddenApps.remove(info);
+        hiddenIndex.remove(info);
         appsHolder.add(info);
         appsHolder.update(false);
+        saveSnapshot();
 
         return info.publicLabel;
     }
@@ -445,6 +761,41 @@ public class AppsManager implements XMLPrefsManager.XmlPrefsElement {
         } return new ArrayList<>();
     }
 
+    public List<String> getAppLabels(String prefix) {
+        return getAppLabels(prefix, null);
+    }
+
+//    if normalizedLabels isn't null, the normalized form of each label is added to it
+    public List<String> getAppLabels(String prefix, List<String> normalizedLabels) {
+        if(appsHolder != null) {
+            return appsHolder.getAppLabels(prefix, normalizedLabels);
+        } return new ArrayList<>();
+    }
+
+    public int getAppLabelsVersion() {
+        if(appsHolder != null) {
+            return appsHolder.labelsIndex.version();
+        } return -1;
+    }
+
+    public List<FuzzyMatcher.Candidate> getAppCandidates() {
+        if(appsHolder != null) {
+            return appsHolder.getCandidates();
+        } return new ArrayList<>();
+    }
+
+    public List<FuzzyMatcher.Candidate> getHiddenAppCandidates() {
+        return FuzzyMatcher.candidates(getHiddenAppsLabels());
+    }
+
+//    the frecency of the shown app with this label, FrecencyManager.NO_SCORE if it was never launched
+    public double getFrecency(String label) {
+        if(appsHolder == null) return FrecencyManager.NO_SCORE;
+
+        LaunchInfo info = appsHolder.index.withLabel(label);
+        return info != null ? info.frecency : FrecencyManager.NO_SCORE;
+    }
+
     public List<String> getHiddenAppsLabels() {
         return AppUtils.labelList(hiddenApps, true);
     }
@@ -455,7 +806,7 @@ public class AppsManager implements XMLPrefsManager.XmlPrefsElement {
     }
 
     public String printApps(int type) {
-        List<String> labels = type == SHOWN_APPS ? appsHolder.appLabels : AppUtils.labelList(hiddenApps, true);
+        List<String> labels = type == SHOWN_APPS ? appsHolder.getAppLabels() : AppUtils.labelList(hiddenApps, true);
         return AppUtils.printApps(labels);
     }
 
@@ -464,6 +815,8 @@ public class AppsManager implements XMLPrefsManager.XmlPrefsElement {
     }
 
     public void onDestroy() {
+        flushLaunches(false);
+        if(snapshotScheduled.get()) saveSnapshot(false);
         unregisterReceiver(context);
     }
 
@@ -473,11 +826,27 @@ public class AppsManager implements XMLPrefsManager.XmlPrefsElement {
 
         public String publicLabel;
         public int launchedTimes = 0;
+        public double frecency = FrecencyManager.NO_SCORE;
+
+//        the label this app is currently indexed with, publicLabel may be changed by checkEquality
+        private String indexedLabel;
+        private FuzzyMatcher.Candidate candidate;
+//        every normalized label checkEquality gave this app, the loaded one first. AppsHolder groups the apps by them
+        private List<String> keys;
+
+//        the label returned by loadLabel, and the last update time of the package when it was loaded
+        private String loadedLabel;
+        private long lastUpdateTime;
 
         public LaunchInfo(String packageName, String activityName, String label) {
             this.componentName = new ComponentName(packageName, activityName);
 
             this.publicLabel = label;
+            this.loadedLabel = label;
+        }
+
+        private AppsSnapshot.Entry snapshotEntry(boolean hidden) {
+            return new AppsSnapshot.Entry(componentName.getPackageName(), componentName.getClassName(), loadedLabel, launchedTimes, hidden, lastUpdateTime);
         }
 
         @Override
@@ -504,6 +873,15 @@ public class AppsManager implements XMLPrefsManager.XmlPrefsElement {
             return false;
         }
 
+        @Override
+        public int hashCode() {
+            return componentName.hashCode();
+        }
+
+        public String prefsKey() {
+            return componentName.getPackageName() + "-" + componentName.getClassName();
+        }
+
         @Override
         public String toString() {
             return componentName.getPackageName() + " - " + componentName.getClassName() + " --> " + publicLabel + ", n=" + launchedTimes;
@@ -515,14 +893,32 @@ public class AppsManager implements XMLPrefsManager.XmlPrefsElement {
         final int MOST_USED = 10, NULL = 11, USER_DEFINIED = 12;
 
         private List<LaunchInfo> infos;
+//        the sorted labels and the candidates of the apps are changed in place. Other threads get a copy, which is made
+//        when they're read after a change, so a burst of broadcasts copies them once
+        private final List<String> labels = new ArrayList<>();
+        private final Set<FuzzyMatcher.Candidate> allCandidates = new LinkedHashSet<>();
         private List<String> appLabels;
+        private List<FuzzyMatcher.Candidate> candidates;
+//        normalized label -> the apps which had it in checkEquality (see LaunchInfo.keys), the only ones an app can clash with
+        private Map<String, List<LaunchInfo>> clashes = new HashMap<>();
+        private PrefixIndex<LaunchInfo> labelsIndex;
+        private AppsIndex index = new AppsIndex();
+        private TypoIndex<LaunchInfo> typoIndex;
+        private int typoIndexVersion;
         private XMLPrefsManager.XMLPrefsList values;
 
         private SuggestedAppMgr suggestedAppMgr;
 
         private class SuggestedAppMgr {
+//            in the order of the options, n1 first
             private List<SuggestedApp> suggested;
-            private int lastWriteable = -1;
+            private Set<LaunchInfo> pinned = new HashSet<>();
+            private int mostUsedSlots = 0;
+
+//            the most used apps which fill the most_used slots, the least used on top
+            private IndexedHeap<LaunchInfo> top = new IndexedHeap<>(mostUsedComparator);
+//            null when the ranking changed since it was built
+            private String[] labels;
 
             public SuggestedAppMgr(XMLPrefsManager.XMLPrefsList values, List<LaunchInfo> apps) {
                 suggested = new ArrayList<>();
@@ -532,7 +928,10 @@ public class AppsManager implements XMLPrefsManager.XmlPrefsElement {
                     String vl = values.get(Options.valueOf(PREFIX + (count + 1))).value;
 
                     if(vl.equals(Options.NULL)) continue;
-                    if(vl.equals(Options.MOST_USED)) suggested.add(new SuggestedApp(MOST_USED, count + 1));
+                    if(vl.equals(Options.MOST_USED)) {
+                        suggested.add(new SuggestedApp(MOST_USED, count + 1));
+                        mostUsedSlots++;
+                    }
                     else {
                         ComponentName name = null;
 
@@ -553,105 +952,61 @@ public class AppsManager implements XMLPrefsManager.XmlPrefsElement {
 
                         if(name == null) continue;
 
-                        LaunchInfo info = AppUtils.findLaunchInfoWithComponent(infos, name);
+                        LaunchInfo info = index.withComponent(name);
                         if(info == null) continue;
                         suggested.add(new SuggestedApp(info, USER_DEFINIED, count + 1));
+                        pinned.add(info);
                     }
                 }
-
-                sort();
-
-//                handler.postDelayed(runnable, 1000 * 60 * 5);
             }
 
-            public int size() {
-                return suggested.size();
-            }
+//            O(log n): the app enters the heap only if it's used more than the least used app in there
+            public synchronized void attemptInsertSuggestion(LaunchInfo info) {
+                if (info.frecency == FrecencyManager.NO_SCORE || mostUsedSlots == 0 || pinned.contains(info)) {
+                    return;
+                }
 
-            private void sort() {
-                Collections.sort(suggested);
-                for(int count = 0; count < suggested.size(); count++) {
-                    if(suggested.get(count).type != MOST_USED) {
-                        lastWriteable = count - 1;
-                        return;
-                    }
+                if(top.contains(info)) {
+                    top.update(info);
+                } else if(top.size() < mostUsedSlots) {
+                    top.add(info);
+                } else if(mostUsedComparator.compare(info, top.peek()) > 0) {
+                    top.poll();
+                    top.add(info);
+                } else {
+                    return;
                 }
-                lastWriteable = suggested.size() - 1;
-            }
 
-            public SuggestedApp get(int index) {
-                return suggested.get(index);
+                labels = null;
             }
 
-            public void set(int index, LaunchInfo info) {
-                suggested.get(index).change(info);
+            public synchronized void invalidate() {
+                labels = null;
             }
 
-            public void attemptInsertSuggestion(LaunchInfo info) {
-                if (info.launchedTimes == 0 || lastWriteable == -1) {
-                    return;
-                }
-
-                int index = Tuils.find(info, suggested);
-                if (index == -1) {
-                    for (int count = 0; count <= lastWriteable; count++) {
-                        SuggestedApp app = get(count);
-
-                        if (app.app == null || info.launchedTimes > app.app.launchedTimes) {
-                            SuggestedApp s = suggested.get(count);
+            public synchronized boolean contains(LaunchInfo info) {
+                return top.contains(info) || pinned.contains(info);
+            }
 
-                            LaunchInfo before = s.app;
-                            s.change(info);
+//            the pinned apps keep their slot, the most_used slots get the most used apps, the most used first
+            public synchronized String[] labels() {
+                if(labels != null) return labels;
 
-                            if(before != null) {
-                                attemptInsertSuggestion(before);
-                            }
+                List<LaunchInfo> ranked = top.values();
+                Collections.sort(ranked, Collections.reverseOrder(mostUsedComparator));
 
-                            break;
-                        }
-                    }
+                List<String> list = new ArrayList<>();
+                int r = 0;
+                for(SuggestedApp app : suggested) {
+                    if(app.type == USER_DEFINIED) list.add(app.app.publicLabel);
+                    else if(r < ranked.size()) list.add(ranked.get(r++).publicLabel);
                 }
-                sort();
-            }
-
-            public List<String> labels() {
-                List<LaunchInfo> list = new ArrayList<>();
 
-                List<SuggestedApp> cp = new ArrayList<>(suggested);
-                Collections.sort(cp, new Comparator<SuggestedApp>() {
-                    @Override
-                    public int compare(SuggestedApp o1, SuggestedApp o2) {
-                        return o1.index - o2.index;
-                    }
-                });
+                labels = list.toArray(new String[list.size()]);
+                return labels;
+            }
 
-                for(int count = 0; count < cp.size(); count++) {
-                    SuggestedApp app = cp.get(count);
-                    if(app.type != NULL && app.app != null) list.add(app.app);
-                }
-                return AppUtils.labelList(list, false);
-            }
-
-//            private Handler handler = new Handler();
-//            private Runnable runnable = new Runnable() {
-//                @Override
-//                public void run() {
-//                    if(duplicates()) {
-//                        fillSuggestions();
-//                    }
-//                    handler.postDelayed(runnable, 1000 * 60 * 2);
-//                }
-//
-//                private boolean duplicates() {
-//                    for (int count =0; count < size(); count++)
-//                        for (int count2 = count+1 ; count2 < size(); count2++)
-//                            if (count != count2 && get(count) == get(count2))
-//                                return true;
-//                    return false;
-//                }
-//            };
-
-            private class SuggestedApp implements Comparable {
+            private class SuggestedApp {
                 int type;
                 LaunchInfo app;
                 int index;
@@ -665,71 +1020,150 @@ public class AppsManager implements XMLPrefsManager.XmlPrefsElement {
                     this.type = type;
                     this.index = index;
                 }
-
-                public SuggestedApp change(LaunchInfo info) {
-                    this.app = info;
-                    return this;
-                }
-
-                @Override
-                public boolean equals(Object o) {
-                    if(o instanceof SuggestedApp) {
-                        try {
-                            return (app == null && ((SuggestedApp) o).app == null) || app.equals(((SuggestedApp) o).app);
-                        } catch (NullPointerException e) {
-                            return false;
-                        }
-                    } else if(o instanceof LaunchInfo) {
-                        if(app == null) return false;
-                        return app.equals(o);
-                    }
-                    return false;
-                }
-
-                @Override
-                public int compareTo(@NonNull Object o) {
-                    SuggestedApp other = (SuggestedApp) o;
-
-                    if(this.type == USER_DEFINIED || other.type == USER_DEFINIED) {
-                        if(this.type == USER_DEFINIED && other.type == USER_DEFINIED) return other.app.launchedTimes - this.app.launchedTimes;
-                        if(this.type == USER_DEFINIED) return 1;
-                        return -1;
-                    }
-
-//                    most_used
-                    if(this.app == null || other.app == null) {
-                        if(this.app == null && other.app == null) return 0;
-                        if(this.app == null) return 1;
-                        return -1;
-                    }
-                    return this.app.launchedTimes - other.app.launchedTimes;
-                }
             }
         }
 
         Comparator<LaunchInfo> mostUsedComparator = new Comparator<LaunchInfo>() {
             @Override
             public int compare(LaunchInfo lhs, LaunchInfo rhs) {
-                return rhs.launchedTimes > lhs.launchedTimes ? -1 : rhs.launchedTimes == lhs.launchedTimes ? 0 : 1;
+                return Double.compare(lhs.frecency, rhs.frecency);
             }
         };
 
         public AppsHolder(List<LaunchInfo> infos, XMLPrefsManager.XMLPrefsList values) {
             this.infos = infos;
             this.values = values;
+            this.labelsIndex = new PrefixIndex<>(true);
+            for(LaunchInfo info : infos) index.add(info);
+            sort();
+
+            AppUtils.checkEquality(infos);
+            for(LaunchInfo info : infos) group(info);
+            reindex(infos);
             update(true);
         }
 
         public void add(LaunchInfo info) {
-            if(!infos.contains(info) ) {
-                infos.add(info);
+            if(index.withComponent(info.componentName) == null) {
+                insert(info);
+                index.add(info);
+//                the keys it had in the hidden apps don't matter
+                info.keys = null;
+                group(info);
+                disambiguate(info.keys);
                 update(false);
+                if(suggestedAppMgr != null) suggestedAppMgr.attemptInsertSuggestion(info);
             }
         }
 
         public void remove(LaunchInfo info) {
-            infos.remove(info);
-            update(true);
+            if(infos.remove(info)) {
+                index.remove(info);
+                unindex(info);
+
+//                the apps it clashed with may get their label back
+                disambiguate(ungroup(info));
+            }
+
+//            suggestions are built again only if the app was one of them
+            update(suggestedAppMgr == null || suggestedAppMgr.contains(info));
+        }
+
+        public void relabel(LaunchInfo info, String label) {
+            List<String> keys = new ArrayList<>(ungroup(info));
+
+            info.publicLabel = label;
+            info.loadedLabel = label;
+            group(info);
+            keys.addAll(info.keys);
+
+            disambiguate(keys);
+            update(false);
+        }
+
+        private void group(LaunchInfo info) {
+            if(info.loadedLabel == null) return;
+
+            if(info.keys == null) {
+                info.keys = new ArrayList<>(1);
+                info.keys.add(AppUtils.key(info.loadedLabel));
+            }
+            for(String key : info.keys) addClash(key, info);
+        }
+
+//        returns the keys the app was grouped with
+        private List<String> ungroup(LaunchInfo info) {
+            List<String> keys = info.keys;
+            info.keys = null;
+            if(keys == null) return new ArrayList<>(0);
+
+            for(String key : keys) removeClash(key, info);
+            return keys;
+        }
+
+        private void addClash(String key, LaunchInfo info) {
+            List<LaunchInfo> apps = clashes.get(key);
+            if(apps == null) {
+                apps = new ArrayList<>(1);
+                clashes.put(key, apps);
+            }
+            apps.add(info);
+        }
+
+        private void removeClash(String key, LaunchInfo info) {
+            List<LaunchInfo> apps = clashes.get(key);
+            if(apps == null) return;
+
+            apps.remove(info);
+            if(apps.size() == 0) clashes.remove(key);
+        }
+
+//        checkEquality only on the apps which can clash with the given normalized labels: the apps which had one of
+//        them, and then the apps which had one of the labels given by checkEquality to those, until no label is left.
+//        They start from their loaded labels, as they would if all the apps were loaded again, and they're compared in
+//        the order of infos, so the labels are the same as with checkEquality on all the apps
+        private void disambiguate(List<String> keys) {
+            Set<String> seen = new HashSet<>();
+            List<String> queue = new ArrayList<>(keys);
+
+            Set<LaunchInfo> added = new HashSet<>();
+            List<LaunchInfo> group = new ArrayList<>(), found = new ArrayList<>();
+
+            while(queue.size() > 0) {
+                for(int count = 0; count < queue.size(); count++) {
+                    String key = queue.get(count);
+                    if(!seen.add(key)) continue;
+
+                    List<LaunchInfo> apps = clashes.get(key);
+                    if(apps == null) continue;
+
+                    for(LaunchInfo info : apps) {
+                        if(!added.add(info)) continue;
+
+                        found.add(info);
+                        queue.addAll(info.keys);
+                    }
+                }
+                queue.clear();
+
+                for(LaunchInfo info : found) ungroup(info);
+                group.addAll(found);
+                found.clear();
+
+                try {
+                    Collections.sort(group, mostUsedComparator);
+                } catch (NullPointerException e) {}
+
+                for(LaunchInfo info : group) info.publicLabel = info.loadedLabel;
+                AppUtils.checkEquality(group);
+
+                for(LaunchInfo info : group) {
+                    for(String key : info.keys) if(!seen.contains(key)) queue.add(key);
+                }
+            }
+
+            for(LaunchInfo info : group) group(info);
+            reindex(group);
         }
 
         private void sort() {
@@ -738,8 +1172,62 @@ public class AppsManager implements XMLPrefsManager.XmlPrefsElement {
             } catch (NullPointerException e) {}
         }
 
-        private void fillLabels() {
-            appLabels = AppUtils.labelList(infos, true);
+//        infos is sorted once, then each app is moved to its place when its frecency changes
+        private void reposition(LaunchInfo info) {
+            if(infos.remove(info)) insert(info);
+        }
+
+//        after the apps with the same frecency, as a stable sort would do
+        private void insert(LaunchInfo info) {
+            int low = 0, high = infos.size();
+            while(low < high) {
+                int mid = (low + high) >>> 1;
+                if(mostUsedComparator.compare(infos.get(mid), info) <= 0) low = mid + 1;
+                else high = mid;
+            }
+            infos.add(low, info);
+        }
+
+//        only the apps which were added or renamed are indexed again
+        private synchronized void reindex(List<LaunchInfo> apps) {
+            for(LaunchInfo info : apps) {
+                if(info.publicLabel == null || info.publicLabel.equals(info.indexedLabel)) continue;
+
+                unindex(info);
+
+                labelsIndex.add(info.publicLabel, info);
+                index.putLabel(info.publicLabel, info);
+                insertSorted(labels, info.publicLabel);
+
+                info.indexedLabel = info.publicLabel;
+                info.candidate = new FuzzyMatcher.Candidate(info.publicLabel, info);
+                allCandidates.add(info.candidate);
+            }
+        }
+
+        private synchronized void unindex(LaunchInfo info) {
+            if(info.indexedLabel != null) {
+                labelsIndex.remove(info.indexedLabel, info);
+                index.removeLabel(info.indexedLabel, info);
+                removeSorted(labels, info.indexedLabel);
+            }
+            if(info.candidate != null) allCandidates.remove(info.candidate);
+
+            info.indexedLabel = null;
+            info.candidate = null;
+
+            appLabels = null;
+            candidates = null;
+        }
+
+        private void insertSorted(List<String> labels, String label) {
+            int i = Collections.binarySearch(labels, label);
+            labels.add(i < 0 ? -i - 1 : i, label);
+        }
+
+        private void removeSorted(List<String> labels, String label) {
+            int i = Collections.binarySearch(labels, label);
+            if(i >= 0) labels.remove(i);
         }
 
         private void fillSuggestions() {
@@ -750,29 +1238,130 @@ public class AppsManager implements XMLPrefsManager.XmlPrefsElement {
         }
 
         public void requestSuggestionUpdate(LaunchInfo info) {
+            reposition(info);
             suggestedAppMgr.attemptInsertSuggestion(info);
         }
 
         private void update(boolean refreshSuggestions) {
-            AppUtils.checkEquality(infos);
-            sort();
-            fillLabels();
             if(refreshSuggestions) {
                 fillSuggestions();
+            } else if(suggestedAppMgr != null) {
+//                labels may have changed
+                suggestedAppMgr.invalidate();
             }
         }
 
-        public List<String> getAppLabels() {
+        public synchronized List<String> getAppLabels() {
+            if(appLabels == null) appLabels = new ArrayList<>(labels);
             return appLabels;
         }
 
+        public synchronized List<FuzzyMatcher.Candidate> getCandidates() {
+            if(candidates == null) candidates = new ArrayList<>(allCandidates);
+            return candidates;
+        }
+
+//        built again only when a label changed
+        public synchronized TypoIndex<LaunchInfo> getTypoIndex() {
+            int version = labelsIndex.version();
+            if(typoIndex == null || typoIndexVersion != version) {
+                TypoIndex<LaunchInfo> index = new TypoIndex<>();
+                for(LaunchInfo info : new ArrayList<>(infos)) index.add(info.publicLabel, info);
+
+                typoIndex = index;
+                typoIndexVersion = version;
+            }
+
+            return typoIndex;
+        }
+
+        public List<String> getAppLabels(String prefix, List<String> normalizedLabels) {
+            List<LaunchInfo> apps = labelsIndex.prefixed(prefix, normalizedLabels);
+
+            List<String> labels = new ArrayList<>(apps.size());
+            for(LaunchInfo info : apps) labels.add(info.indexedLabel);
+            return labels;
+        }
+
         public List<LaunchInfo> getApps() {
             return infos;
         }
 
         public String[] getSuggestedApps() {
-            List<String> ls = suggestedAppMgr.labels();
-            return ls.toArray(new String[ls.size()]);
+            return suggestedAppMgr.labels();
+        }
+    }
+
+//    constant time lookups of the apps of a list, by label (ignoring case), by component and by package
+    private static class AppsIndex {
+
+        private Map<String, LaunchInfo> byLabel = new HashMap<>();
+        private Map<ComponentName, LaunchInfo> byComponent = new HashMap<>();
+        private Map<String, List<LaunchInfo>> byPackage = new HashMap<>();
+
+        synchronized void add(LaunchInfo info) {
+            byComponent.put(info.componentName, info);
+
+            String pkg = info.componentName.getPackageName();
+            List<LaunchInfo> infos = byPackage.get(pkg);
+            if(infos == null) {
+                infos = new ArrayList<>(1);
+                byPackage.put(pkg, infos);
+            }
+            infos.add(info);
+        }
+
+//        the label has to be removed by removeLabel
+        synchronized void remove(LaunchInfo info) {
+            byComponent.remove(info.componentName);
+
+            String pkg = info.componentName.getPackageName();
+            List<LaunchInfo> infos = byPackage.get(pkg);
+            if(infos != null) {
+                infos.remove(info);
+                if(infos.size() == 0) byPackage.remove(pkg);
+            }
+        }
+
+        synchronized void putLabel(String label, LaunchInfo info) {
+            if(label != null) byLabel.put(key(label), info);
+        }
+
+        synchronized void removeLabel(String label, LaunchInfo info) {
+            if(label == null) return;
+
+            String key = key(label);
+            if(byLabel.get(key) == info) byLabel.remove(key);
+        }
+
+        synchronized void rebuild(List<LaunchInfo> infos) {
+            byLabel.clear();
+            byComponent.clear();
+            byPackage.clear();
+
+            for(LaunchInfo info : infos) {
+                add(info);
+                putLabel(info.publicLabel, info);
+            }
+        }
+
+        synchronized LaunchInfo withLabel(String label) {
+            if(label == null) return null;
+            return byLabel.get(key(label));
+        }
+
+        synchronized LaunchInfo withComponent(ComponentName name) {
+            if(name == null) return null;
+            return byComponent.get(name);
+        }
+
+        synchronized List<LaunchInfo> withPackage(String packageName) {
+            List<LaunchInfo> infos = byPackage.get(packageName);
+            return infos != null ? new ArrayList<>(infos) : new ArrayList<LaunchInfo>(0);
+        }
+
+        private static String key(String label) {
+            return label.trim().toLowerCase();
         }
     }
 
@@ -793,46 +1382,113 @@ public class AppsManager implements XMLPrefsManager.XmlPrefsElement {
             return null;
         }
 
-        private static List<LaunchInfo> findLaunchInfosWithPackage(String packageName, List<LaunchInfo> infos) {
-            List<LaunchInfo> result = new ArrayList<>();
-            for(LaunchInfo info : infos) if (info.componentName.getPackageName().equals(packageName)) result.add(info);
+//        apps are grouped by normalized label, so each one is compared only with the apps it clashes with. The pairs
+//        are visited in the same order as comparing each app with all the others, thus the result doesn't change
+        public static void checkEquality(List<LaunchInfo> list) {
+            String[] labels = new String[list.size()], packages = new String[list.size()], activities = new String[list.size()];
+            for (int count = 0; count < list.size(); count++) {
+                LaunchInfo info = list.get(count);
+                if(info == null || info.publicLabel == null) {
+                    continue;
+                }
+
+                labels[count] = info.publicLabel;
+                packages[count] = info.componentName.getPackageName();
+                activities[count] = info.componentName.getClassName();
+            }
+
+            List<List<String>> keys = new ArrayList<>(list.size());
+            for (int count = 0; count < list.size(); count++) keys.add(labels[count] != null ? new ArrayList<String>(1) : null);
+
+            checkEquality(labels, packages, activities, keys);
+
+            for (int count = 0; count < list.size(); count++) {
+                if(labels[count] == null) continue;
 
-            return result;
+                LaunchInfo info = list.get(count);
+                info.publicLabel = labels[count];
+                info.keys = keys.get(count);
+            }
         }
 
-        public static void checkEquality(List<LaunchInfo> list) {
+        static void checkEquality(String[] labels, String[] packages, String[] activities) {
+            checkEquality(labels, packages, activities, null);
+        }
 
-            for (LaunchInfo info : list) {
+//        the labels are changed in place, a null label is skipped. Each group is a sorted list of indexes
+//        (TreeSet.ceiling needs api 9). If history isn't null, every key given to labels[i] is added to history.get(i)
+        static void checkEquality(String[] labels, String[] packages, String[] activities, List<List<String>> history) {
+            Map<String, List<Integer>> groups = new HashMap<>();
+            String[] keys = new String[labels.length];
 
-                if(info == null || info.publicLabel == null) {
+            for (int count = 0; count < labels.length; count++) {
+                if(labels[count] == null) {
                     continue;
                 }
 
-                for (int count = 0; count < list.size(); count++) {
-                    LaunchInfo info2 = list.get(count);
+                setKey(groups, keys, history, count, labels[count]);
+            }
 
-                    if(info2 == null || info2.publicLabel == null) {
-                        continue;
-                    }
+            for (int index = 0; index < labels.length; index++) {
+                if(keys[index] == null) {
+                    continue;
+                }
+
+                for (int from = 0; ; ) {
+                    List<Integer> group = groups.get(keys[index]);
 
-                    if(info == info2) {
-                        continue;
+                    int position = Collections.binarySearch(group, from);
+                    if(position < 0) position = -position - 1;
+                    if(position < group.size() && group.get(position) == index) position++;
+                    if(position == group.size()) {
+                        break;
                     }
 
-                    if (info.publicLabel.toLowerCase().replace(Tuils.SPACE, Tuils.EMPTYSTRING).equals(info2.publicLabel.toLowerCase().replace(Tuils.SPACE, Tuils.EMPTYSTRING))) {
-//                        there are two activities in the same app loadlabel gives the same result
-                        if(info.componentName.getPackageName().equals(info2.componentName.getPackageName())) {
-                            info.publicLabel = insertActivityName(info.publicLabel, info.componentName.getClassName());
-                            info2.publicLabel = insertActivityName(info2.publicLabel, info2.componentName.getClassName());
-                        }
-                        else {
-                            info2.publicLabel = getNewLabel(info2.publicLabel, info2.componentName.getClassName());
-                        }
+                    int count = group.get(position);
+                    from = count + 1;
+
+//                    there are two activities in the same app loadlabel gives the same result
+                    if(packages[index].equals(packages[count])) {
+                        labels[index] = insertActivityName(labels[index], activities[index]);
+                        labels[count] = insertActivityName(labels[count], activities[count]);
+
+                        setKey(groups, keys, history, index, labels[index]);
+                        setKey(groups, keys, history, count, labels[count]);
+                    }
+                    else {
+                        labels[count] = getNewLabel(labels[count], activities[count]);
+                        setKey(groups, keys, history, count, labels[count]);
                     }
                 }
             }
         }
 
+        private static void setKey(Map<String, List<Integer>> groups, String[] keys, List<List<String>> history, int index, String label) {
+            if(keys[index] != null) {
+                List<Integer> old = groups.get(keys[index]);
+                old.remove(Collections.binarySearch(old, index));
+                if(old.size() == 0) groups.remove(keys[index]);
+            }
+
+            String key = key(label);
+            keys[index] = key;
+            if(history != null && !history.get(index).contains(key)) history.get(index).add(key);
+
+            List<Integer> group = groups.get(key);
+            if(group == null) {
+                group = new ArrayList<>();
+                groups.put(key, group);
+            }
+
+            int position = Collections.binarySearch(group, index);
+            if(position < 0) group.add(-position - 1, index);
+        }
+
+//        two labels clash if they're the same in this form
+        static String key(String label) {
+            return label.toLowerCase().replace(Tuils.SPACE, Tuils.EMPTYSTRING);
+        }
+
         static Pattern activityPattern = Pattern.compile("activity", Pattern.CASE_INSENSITIVE);
         public static String insertActivityName(String oldLabel, String activityName) {
             String name;
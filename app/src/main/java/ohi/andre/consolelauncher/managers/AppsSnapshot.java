@@ -0,0 +1,102 @@
+package ohi.andre.consolelauncher.managers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import ohi.andre.consolelauncher.tuils.Tuils;
+
+/**
+ * The apps found by the last fill, so that the next start doesn't have to wait for the PackageManager.
+ *
+ * For each app: package, activity, label (as returned by loadLabel), launch count, hidden flag and last update
+ * time of the package. The labels depend on the language, so a snapshot taken with another locale is ignored
+ */
+
+class AppsSnapshot {
+
+    private static final int MAGIC = 0x74756961;
+    private static final int VERSION = 1;
+
+    static class Entry {
+
+        final String packageName, activityName, label;
+        final int launchedTimes;
+        final boolean hidden;
+        final long lastUpdateTime;
+
+        Entry(String packageName, String activityName, String label, int launchedTimes, boolean hidden, long lastUpdateTime) {
+            this.packageName = packageName;
+            this.activityName = activityName;
+            this.label = label;
+            this.launchedTimes = launchedTimes;
+            this.hidden = hidden;
+            this.lastUpdateTime = lastUpdateTime;
+        }
+    }
+
+//    null if there's no valid snapshot for this locale
+    static List<Entry> read(File file, String locale) {
+        if(!file.exists()) return null;
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+            if(in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(locale)) return null;
+
+            int count = in.readInt();
+            List<Entry> entries = new ArrayList<>(count);
+            for(int c = 0; c < count; c++) {
+                entries.add(new Entry(in.readUTF(), in.readUTF(), in.readUTF(), in.readInt(), in.readBoolean(), in.readLong()));
+            }
+
+            return entries;
+        } catch (Exception e) {
+            Tuils.log(e);
+            return null;
+        } finally {
+            try {
+                if(in != null) in.close();
+            } catch (Exception e) {}
+        }
+    }
+
+    static synchronized void write(File file, String locale, List<Entry> entries) {
+        File temp = new File(file.getAbsolutePath() + ".tmp");
+
+        try {
+            FileOutputStream fos = new FileOutputStream(temp);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(locale);
+
+            out.writeInt(entries.size());
+            for(Entry e : entries) {
+                out.writeUTF(e.packageName);
+                out.writeUTF(e.activityName);
+                out.writeUTF(e.label);
+                out.writeInt(e.launchedTimes);
+                out.writeBoolean(e.hidden);
+                out.writeLong(e.lastUpdateTime);
+            }
+
+            out.flush();
+            fos.getFD().sync();
+            out.close();
+
+            if(!temp.renameTo(file)) temp.delete();
+        } catch (Exception e) {
+            Tuils.log(e);
+            temp.delete();
+        }
+    }
+}
@@ -15,9 +15,11 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
-import ohi.andre.comparestring.Compare;
 import ohi.andre.consolelauncher.LauncherActivity;
+import ohi.andre.consolelauncher.tuils.Compare;
+import ohi.andre.consolelauncher.tuils.FuzzyMatcher;
 import ohi.andre.consolelauncher.tuils.Tuils;
+import ohi.andre.consolelauncher.tuils.TypoIndex;
 
 public class ContactManager {
 
@@ -25,6 +27,8 @@ public class ContactManager {
 
     private Context context;
     private List<Contact> contacts;
+    private List<FuzzyMatcher.Candidate> candidates;
+    private TypoIndex<Contact> typoIndex;
 
     public ContactManager(Context context) {
         this.context = context;
@@ -36,6 +40,8 @@ public class ContactManager {
         if (ContextCompat.checkSelfPermission(context, Manifest.permission.READ_CONTACTS) != PackageManager.PERMISSION_GRANTED) {
             ActivityCompat.requestPermissions((Activity) context, new String[]{Manifest.permission.READ_CONTACTS}, LauncherActivity.COMMAND_SUGGESTION_REQUEST_PERMISSION);
             mgr.contacts = contacts;
+            mgr.candidates = new ArrayList<>();
+            mgr.typoIndex = new TypoIndex<>();
             return;
         }
 
@@ -97,8 +103,17 @@ public class ContactManager {
             if(cp.get(count).numbers.size() == 0) contacts.remove(count--);
         }
 
+        Collections.sort(contacts);
+
+        List<FuzzyMatcher.Candidate> candidates = new ArrayList<>(contacts.size());
+        for(Contact c : contacts) candidates.add(new FuzzyMatcher.Candidate(c.name, c));
+
+        TypoIndex<Contact> typoIndex = new TypoIndex<>();
+        for(Contact c : contacts) typoIndex.add(c.name, c);
+
+        mgr.candidates = candidates;
+        mgr.typoIndex = typoIndex;
         mgr.contacts = contacts;
-        Collections.sort(mgr.contacts);
     }
 
     public List<String> listNames() {
@@ -115,6 +130,13 @@ public class ContactManager {
         return contacts;
     }
 
+//    the contacts ready to be used by FuzzyMatcher, tag is the Contact
+    public List<FuzzyMatcher.Candidate> getCandidates() {
+        if(contacts == null || contacts.size() == 0) refreshContacts(this, context);
+
+        return candidates;
+    }
+
     public List<String> listNamesAndNumbers() {
         if(contacts == null || contacts.size() == 0) refreshContacts(this, context);
 
@@ -216,19 +238,25 @@ public class ContactManager {
     public String findNumber(String name, int minRate) {
         if(contacts == null) refreshContacts(this, context);
 
-        String mostSuitable = Compare.similarString(listNames(), name, minRate, USE_SCROLL_COMPARE);
+        FuzzyMatcher.Candidate mostSuitable = FuzzyMatcher.best(getCandidates(), name, minRate, USE_SCROLL_COMPARE);
         if(mostSuitable == null) return null;
 
-        for(int count = 0; count < contacts.size(); count++) {
-            Contact c = contacts.get(count);
-            if(c.name.equals(mostSuitable)) {
-                if(c.numbers.size() > 0) return c.numbers.get(0);
-            }
-        }
+        Contact c = (Contact) mostSuitable.tag;
+        if(c.numbers.size() > 0) return c.numbers.get(0);
 
         return null;
     }
 
+//    the number of the contact whose name is a few typos away from name, if there's only one
+    public String findNumberWithTypos(String name) {
+        if(contacts == null || contacts.size() == 0) refreshContacts(this, context);
+
+        Contact c = typoIndex.closest(name);
+        if(c == null || c.numbers.size() == 0) return null;
+
+        return c.numbers.get(0);
+    }
+
     public boolean delete(String phone) {
         return context.getContentResolver().delete(fromPhone(phone), null, null) > 0;
     }
@@ -263,12 +291,14 @@ public class ContactManager {
 
     public static class Contact implements Comparable<Contact> {
         public String name;
+        public String normalizedName;
         public List<String> numbers = new ArrayList<>();
 
         private int selectedNumber;
 
         public Contact(String name, List<String> numbers, int defNumber) {
             this.name = name;
+            this.normalizedName = Compare.normalize(name);
             this.numbers = numbers;
 
             setSelectedNumber(defNumber);
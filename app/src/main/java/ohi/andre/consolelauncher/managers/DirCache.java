@@ -0,0 +1,121 @@
+package ohi.andre.consolelauncher.managers;
+
+import android.os.FileObserver;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ohi.andre.consolelauncher.tuils.FuzzyMatcher;
+
+/**
+ * The content of the last directories which have been listed, shared by file suggestions, ls and wildcards.
+ *
+ * An entry is dropped when its FileObserver reports a change, or when the last modified time of the directory
+ * is different from the one it had when it was listed (for changes the observer can't see, ie. made with root)
+ */
+
+public class DirCache {
+
+    private static final int MAX_ENTRIES = 32;
+
+    private static final int EVENTS = FileObserver.CREATE | FileObserver.DELETE | FileObserver.MOVED_FROM | FileObserver.MOVED_TO |
+            FileObserver.DELETE_SELF | FileObserver.MOVE_SELF;
+
+    private static final Map<String, Listing> entries = new LinkedHashMap<String, Listing>(MAX_ENTRIES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Listing> eldest) {
+            if(size() > MAX_ENTRIES) {
+                eldest.getValue().observer.stopWatching();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private DirCache() {}
+
+//    the names of the files inside dir, sorted. null if dir can't be listed
+    public static String[] list(File dir) {
+        Listing e = get(dir);
+        return e == null ? null : e.names;
+    }
+
+//    the files inside dir, in the order returned by File.listFiles(). null if dir can't be listed
+    public static File[] listFiles(File dir) {
+        Listing e = get(dir);
+        return e == null ? null : e.files;
+    }
+
+    public static List<FuzzyMatcher.Candidate> candidates(File dir) {
+        Listing e = get(dir);
+        if(e == null) return null;
+
+        synchronized (e) {
+            if(e.candidates == null) e.candidates = FuzzyMatcher.candidates(e.names);
+            return e.candidates;
+        }
+    }
+
+//    for the changes made by the launcher, the observer could see them late (or not at all, if they were made with root)
+    public static synchronized void invalidate(File dir) {
+        if(dir == null) return;
+
+        Listing e = entries.remove(dir.getAbsolutePath());
+        if(e != null) e.observer.stopWatching();
+    }
+
+    private static synchronized Listing get(File dir) {
+        if(dir == null) return null;
+
+        String path = dir.getAbsolutePath();
+        long lastModified = dir.lastModified();
+
+        Listing e = entries.get(path);
+        if(e != null && !e.stale && e.lastModified == lastModified) return e;
+
+        if(e != null) {
+            entries.remove(path);
+            e.observer.stopWatching();
+        }
+
+        File[] files = dir.listFiles();
+        if(files == null) return null;
+
+        e = new Listing(path, files, lastModified);
+        e.observer.startWatching();
+        entries.put(path, e);
+
+        return e;
+    }
+
+    private static class Listing {
+
+        final File[] files;
+        final String[] names;
+        final long lastModified;
+        final FileObserver observer;
+
+        volatile boolean stale = false;
+        List<FuzzyMatcher.Candidate> candidates;
+
+        Listing(String path, File[] files, long lastModified) {
+            this.files = files;
+            this.lastModified = lastModified;
+
+            names = new String[files.length];
+            for(int count = 0; count < files.length; count++) names[count] = files[count].getName();
+            Arrays.sort(names);
+
+//            the observer runs on its own thread, the entry is only marked here and dropped by the next get
+            observer = new FileObserver(path, EVENTS) {
+                @Override
+                public void onEvent(int event, String path) {
+                    stale = true;
+                }
+            };
+        }
+    }
+}
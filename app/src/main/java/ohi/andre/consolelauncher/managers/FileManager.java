@@ -146,7 +146,11 @@ public class FileManager {
 //            return null;
 //        }
 
-        File[] content = f.listFiles();
+        File[] content = DirCache.listFiles(f);
+        if(content == null) {
+            return null;
+        }
+        content = content.clone();
 
         Arrays.sort(content, new Comparator<File>() {
             @Override
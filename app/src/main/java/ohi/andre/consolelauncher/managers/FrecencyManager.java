@@ -0,0 +1,207 @@
+package ohi.andre.consolelauncher.managers;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import ohi.andre.consolelauncher.tuils.Tuils;
+
+/**
+ * Time-decayed usage scores for apps, commands, aliases and contacts.
+ *
+ * Every use at time t adds 2^(t / HALF_LIFE) to the score of an item, so a use counts half after HALF_LIFE.
+ * Only log2 of the sum is stored: the order of two items never changes with time, thus it can be compared
+ * as it is, and a new use updates it in O(1) (see logAdd).
+ *
+ * Uses are appended to frecency.txt by a background thread, the file is compacted to one line for each item
+ * when it grows too much
+ */
+
+public class FrecencyManager {
+
+    public static final String PATH = "frecency.txt";
+
+    public static final String APP = "app", COMMAND = "cmd", ALIAS = "alias", CONTACT = "contact";
+
+    public static final double NO_SCORE = Double.NEGATIVE_INFINITY;
+
+    private static final double HALF_LIFE = 14 * 24 * 60 * 60 * 1000d;
+
+    private static final String EVENT = "e", SNAPSHOT = "s", SEPARATOR = "\t";
+
+    private static final int MIN_COMPACT_LINES = 500;
+
+    private static Map<String, Double> scores;
+    private static int lines;
+
+//    the lines which will be appended by writer, in order
+    private static List<String> queue = new ArrayList<>();
+    private static final ExecutorService writer = Executors.newSingleThreadExecutor();
+    private static final Runnable writeRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+//    held while the file is written, so that the lines are written in order
+    private static final Object fileLock = new Object();
+
+    private FrecencyManager() {}
+
+    public static synchronized double score(String type, String key) {
+        load();
+
+        Double d = scores.get(type + SEPARATOR + key);
+        return d == null ? NO_SCORE : d;
+    }
+
+    public static synchronized double record(String type, String key) {
+        long now = System.currentTimeMillis();
+
+        double score = use(type, key, now);
+        save(type, key, now);
+        return score;
+    }
+
+//    counts a use only in memory, it must be written later with save (i.e. by AppsManager, which writes the launches in batches)
+    public static synchronized double use(String type, String key, long time) {
+        load();
+
+        String k = type + SEPARATOR + key;
+
+        double score = logAdd(scores.get(k), time / HALF_LIFE);
+        scores.put(k, score);
+
+        return score;
+    }
+
+    public static synchronized void save(String type, String key, long time) {
+        append(EVENT + SEPARATOR + type + SEPARATOR + key + SEPARATOR + time);
+    }
+
+//    used to import the old launch counters: they're considered as old as one half life
+    public static synchronized double seed(String type, String key, int times) {
+        load();
+
+        String k = type + SEPARATOR + key;
+        Double score = scores.get(k);
+        if(score != null || times <= 0) return score != null ? score : NO_SCORE;
+
+        score = Math.log(times) / Math.log(2) + (System.currentTimeMillis() - HALF_LIFE) / HALF_LIFE;
+        scores.put(k, score);
+
+        append(SNAPSHOT + SEPARATOR + k + SEPARATOR + score);
+        return score;
+    }
+
+//    log2(2^a + 2^b)
+    private static double logAdd(Double a, double b) {
+        if(a == null) return b;
+
+        double max = Math.max(a, b), min = Math.min(a, b);
+        return max + Math.log(1 + Math.pow(2, min - max)) / Math.log(2);
+    }
+
+    private static void load() {
+        if(scores != null) return;
+
+        scores = new HashMap<>();
+        lines = 0;
+
+        File file = new File(Tuils.getFolder(), PATH);
+        if(!file.exists()) return;
+
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file)));
+
+            String line;
+            while((line = reader.readLine()) != null) {
+                String[] split = line.split(SEPARATOR);
+                if(split.length != 4) continue;
+
+                lines++;
+
+                String k = split[1] + SEPARATOR + split[2];
+                try {
+                    if(split[0].equals(EVENT)) scores.put(k, logAdd(scores.get(k), Long.parseLong(split[3]) / HALF_LIFE));
+                    else if(split[0].equals(SNAPSHOT)) scores.put(k, Double.parseDouble(split[3]));
+                } catch (NumberFormatException e) {}
+            }
+
+            reader.close();
+        } catch (Exception e) {
+            Tuils.log(e);
+        }
+    }
+
+    private static void append(String line) {
+        queue.add(line);
+        if(queue.size() == 1) writer.execute(writeRunnable);
+    }
+
+//    writes the queued lines on the calling thread, for when the process is about to die
+    public static void flush() {
+        synchronized (fileLock) {
+            List<String> toWrite;
+            String snapshot = null;
+
+            synchronized (FrecencyManager.class) {
+                if(queue.size() == 0) return;
+
+                toWrite = queue;
+                queue = new ArrayList<>();
+
+                lines += toWrite.size();
+//                the scores already contain the queued uses
+                if(lines > MIN_COMPACT_LINES && lines > scores.size() * 4) {
+                    StringBuilder builder = new StringBuilder();
+                    for(Map.Entry<String, Double> entry : scores.entrySet()) {
+                        builder.append(SNAPSHOT).append(SEPARATOR).append(entry.getKey()).append(SEPARATOR).append(entry.getValue()).append(Tuils.NEWLINE);
+                    }
+                    snapshot = builder.toString();
+                    lines = scores.size();
+                }
+            }
+
+            if(snapshot != null) compact(snapshot);
+            else write(toWrite);
+        }
+    }
+
+    private static void write(List<String> toWrite) {
+        try {
+            StringBuilder builder = new StringBuilder();
+            for(String line : toWrite) builder.append(line).append(Tuils.NEWLINE);
+
+            FileOutputStream fos = new FileOutputStream(new File(Tuils.getFolder(), PATH), true);
+            fos.write(builder.toString().getBytes());
+            fos.close();
+        } catch (Exception e) {
+            Tuils.log(e);
+        }
+    }
+
+    private static void compact(String snapshot) {
+        File file = new File(Tuils.getFolder(), PATH);
+        File temp = new File(Tuils.getFolder(), PATH + ".tmp");
+
+        try {
+            FileOutputStream fos = new FileOutputStream(temp);
+            fos.write(snapshot.getBytes());
+            fos.getFD().sync();
+            fos.close();
+
+            if(!temp.renameTo(file)) temp.delete();
+        } catch (Exception e) {
+            Tuils.log(e);
+        }
+    }
+}
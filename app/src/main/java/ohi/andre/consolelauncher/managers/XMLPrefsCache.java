@@ -0,0 +1,323 @@
+package ohi.andre.consolelauncher.managers;
+
+import android.graphics.Color;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import ohi.andre.consolelauncher.tuils.Tuils;
+
+/**
+ * What was loaded the last time from each XML file: the resolved values (with the type they were converted to, if
+ * any) and the nodes given to the NodeListener, so that a file which didn't change isn't read at all.
+ *
+ * An entry is used without reading the file only if the size and the last modified time are the same and the file
+ * was last modified well before its content was read for the entry (at least MTIME_RESOLUTION ms, as the time of
+ * the files on FAT is rounded to 2s), because an edit made right after the read could have the same time and size.
+ * Otherwise the file is read and the entry is used only if the CRC32 of the content is the same. So an edit is
+ * missed only if it keeps the size and restores the exact last modified time of the cached version.
+ * The entries are read once, in init, and then can be used by many threads
+ */
+
+class XMLPrefsCache {
+
+    private static final int MAGIC = 0x74756978;
+    private static final int VERSION = 3;
+
+    private static final String NAME = "config.cache";
+
+//    the values are converted by the ui after the files are loaded, they're written when most of them are there
+    private static final long WRITE_DELAY = 10000;
+
+    private static final long MTIME_RESOLUTION = 2000;
+
+    private static final byte NONE = 0, INT = 1, COLOR = 2, BOOLEAN = 3, STRING = 4;
+
+    static class Entry {
+//        read is when the content with that crc was read
+        final long length, lastModified, crc, read;
+//        the XMLPrefsSave labels and the deleted nodes the values were resolved with
+        final String signature;
+
+        final List<XMLPrefsLoader.Node> nodes;
+        final String[] keys, values;
+        final XMLPrefsManager.Typed[] typed;
+//        the last entries created from this, their value could have been converted after the load
+        final XMLPrefsManager.XMLPrefsEntry[] live;
+
+        Entry(long length, long lastModified, long crc, long read, String signature, List<XMLPrefsLoader.Node> nodes, String[] keys, String[] values, XMLPrefsManager.Typed[] typed) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.crc = crc;
+            this.read = read;
+            this.signature = signature;
+            this.nodes = nodes;
+            this.keys = keys;
+            this.values = values;
+            this.typed = typed;
+            this.live = new XMLPrefsManager.XMLPrefsEntry[keys.length];
+        }
+
+        void fill(XMLPrefsManager.XMLPrefsList list) {
+            for(int count = 0; count < keys.length; count++) {
+                XMLPrefsManager.XMLPrefsEntry e = new XMLPrefsManager.XMLPrefsEntry(keys[count], values[count], typed[count]);
+                live[count] = e;
+                list.add(e);
+            }
+        }
+
+//        the conversion done for the value which is in the file, if there's one
+        XMLPrefsManager.Typed typed(int index) {
+            XMLPrefsManager.XMLPrefsEntry e = live[index];
+            XMLPrefsManager.Typed t = e == null ? null : e.typed();
+            return t != null && t.from == values[index] ? t : typed[index];
+        }
+    }
+
+    private static volatile File file;
+//    empty until init is called
+    private static volatile Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private static final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor();
+    private static boolean scheduled = false;
+
+    private static final Runnable writeRunnable = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (XMLPrefsCache.class) {
+                scheduled = false;
+            }
+            write();
+        }
+    };
+
+    private XMLPrefsCache() {}
+
+    static void init(File dir) {
+        File f = new File(dir, NAME);
+        entries = read(f);
+        file = f;
+    }
+
+//    without reading the file, null if it could have changed
+    static Entry get(File source, String signature) {
+        if(file == null) return null;
+
+        Entry e = entries.get(source.getAbsolutePath());
+        if(e == null || !e.signature.equals(signature) || e.length != source.length() || e.lastModified != source.lastModified()) return null;
+        if(e.lastModified + MTIME_RESOLUTION > e.read) return null;
+        return e;
+    }
+
+//    the file was read at time read, its content could be the same
+    static Entry get(File source, String signature, long length, long lastModified, long crc, long read) {
+        if(file == null) return null;
+
+        String path = source.getAbsolutePath();
+        Entry e = entries.get(path);
+        if(e == null || !e.signature.equals(signature) || e.length != length || e.crc != crc) return null;
+
+        Entry updated = new Entry(length, lastModified, crc, read, signature, e.nodes, e.keys, e.values, e.typed);
+        entries.put(path, updated);
+        schedule();
+
+        return updated;
+    }
+
+    static Entry put(File source, String signature, long length, long lastModified, long crc, long read, List<XMLPrefsLoader.Node> nodes, List<XMLPrefsManager.XMLPrefsEntry> values) {
+        String[] keys = new String[values.size()], vs = new String[values.size()];
+        for(int count = 0; count < keys.length; count++) {
+            keys[count] = values.get(count).key;
+            vs[count] = values.get(count).value;
+        }
+
+        Entry e = new Entry(length, lastModified, crc, read, signature, nodes, keys, vs, new XMLPrefsManager.Typed[keys.length]);
+        for(int count = 0; count < keys.length; count++) e.live[count] = values.get(count);
+
+        if(file == null) return e;
+
+        entries.put(source.getAbsolutePath(), e);
+        schedule();
+
+        return e;
+    }
+
+    private static synchronized void schedule() {
+        if(scheduled) return;
+
+        scheduled = true;
+        writer.schedule(writeRunnable, WRITE_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    private static Map<String, Entry> read(File f) {
+        Map<String, Entry> map = new ConcurrentHashMap<>();
+        if(!f.exists()) return map;
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)));
+
+            if(in.readInt() != MAGIC || in.readInt() != VERSION) return map;
+
+            int count = in.readInt();
+            for(int c = 0; c < count; c++) {
+                String path = in.readUTF();
+                long length = in.readLong(), lastModified = in.readLong(), crc = in.readLong(), read = in.readLong();
+                String signature = in.readUTF();
+
+                int n = in.readInt();
+                List<XMLPrefsLoader.Node> nodes = new ArrayList<>(n);
+                for(int i = 0; i < n; i++) {
+                    String name = in.readUTF();
+
+                    int attrs = in.readInt();
+                    String[] names = new String[attrs], values = new String[attrs];
+                    for(int a = 0; a < attrs; a++) {
+                        names[a] = in.readUTF();
+                        values[a] = in.readUTF();
+                    }
+
+                    nodes.add(new XMLPrefsLoader.Node(name, names, values));
+                }
+
+                n = in.readInt();
+                String[] keys = new String[n], values = new String[n];
+                XMLPrefsManager.Typed[] typed = new XMLPrefsManager.Typed[n];
+                for(int i = 0; i < n; i++) {
+                    keys[i] = in.readUTF();
+                    values[i] = in.readUTF();
+                    typed[i] = readTyped(in, values[i]);
+                }
+
+                map.put(path, new Entry(length, lastModified, crc, read, signature, nodes, keys, values, typed));
+            }
+        } catch (Exception e) {
+            Tuils.log(e);
+            map.clear();
+        } finally {
+            try {
+                if(in != null) in.close();
+            } catch (Exception e) {}
+        }
+
+        return map;
+    }
+
+    private static XMLPrefsManager.Typed readTyped(DataInputStream in, String from) throws Exception {
+        byte type = in.readByte();
+        if(type == NONE) return null;
+
+//        the conversion failed
+        if(!in.readBoolean()) return new XMLPrefsManager.Typed(from, typeClass(type), null);
+
+        switch (type) {
+            case INT:
+                return new XMLPrefsManager.Typed(from, int.class, in.readInt());
+            case COLOR:
+                return new XMLPrefsManager.Typed(from, Color.class, in.readInt());
+            case BOOLEAN:
+                return new XMLPrefsManager.Typed(from, boolean.class, in.readBoolean());
+            default:
+                return new XMLPrefsManager.Typed(from, String.class, from);
+        }
+    }
+
+    private static Class<?> typeClass(byte type) {
+        switch (type) {
+            case INT:
+                return int.class;
+            case COLOR:
+                return Color.class;
+            case BOOLEAN:
+                return boolean.class;
+            default:
+                return String.class;
+        }
+    }
+
+    private static void writeTyped(DataOutputStream out, XMLPrefsManager.Typed t) throws Exception {
+        byte type = NONE;
+        if(t != null) {
+            if(t.type == int.class) type = INT;
+            else if(t.type == Color.class) type = COLOR;
+            else if(t.type == boolean.class) type = BOOLEAN;
+            else if(t.type == String.class) type = STRING;
+        }
+
+        out.writeByte(type);
+        if(type == NONE) return;
+
+        out.writeBoolean(t.value != null);
+        if(t.value == null) return;
+
+        if(type == INT || type == COLOR) out.writeInt((Integer) t.value);
+        else if(type == BOOLEAN) out.writeBoolean((Boolean) t.value);
+    }
+
+    private static void write() {
+        File f = file;
+        if(f == null) return;
+
+        File temp = new File(f.getAbsolutePath() + ".tmp");
+        try {
+            List<Map.Entry<String, Entry>> copy = new ArrayList<>(entries.entrySet());
+
+            FileOutputStream fos = new FileOutputStream(temp);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            out.writeInt(copy.size());
+            for(Map.Entry<String, Entry> entry : copy) {
+                Entry e = entry.getValue();
+
+                out.writeUTF(entry.getKey());
+                out.writeLong(e.length);
+                out.writeLong(e.lastModified);
+                out.writeLong(e.crc);
+                out.writeLong(e.read);
+                out.writeUTF(e.signature);
+
+                out.writeInt(e.nodes.size());
+                for(XMLPrefsLoader.Node node : e.nodes) {
+                    out.writeUTF(node.name);
+
+                    out.writeInt(node.attrNames.length);
+                    for(int a = 0; a < node.attrNames.length; a++) {
+                        out.writeUTF(node.attrNames[a]);
+                        out.writeUTF(node.attrValues[a]);
+                    }
+                }
+
+                out.writeInt(e.keys.length);
+                for(int count = 0; count < e.keys.length; count++) {
+                    out.writeUTF(e.keys[count]);
+                    out.writeUTF(e.values[count]);
+                    writeTyped(out, e.typed(count));
+                }
+            }
+
+            out.flush();
+            fos.getFD().sync();
+            out.close();
+
+            if(!temp.renameTo(f)) temp.delete();
+        } catch (Exception e) {
+            Tuils.log(e);
+            temp.delete();
+        }
+    }
+}
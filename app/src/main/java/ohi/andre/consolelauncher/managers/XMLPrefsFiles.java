@@ -0,0 +1,185 @@
+package ohi.andre.consolelauncher.managers;
+
+import org.w3c.dom.Document;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import ohi.andre.consolelauncher.tuils.Tuils;
+
+/**
+ * The parsed XML files which are being edited. A change only touches the document in memory and marks it dirty,
+ * the file is written once for every batch of changes, FLUSH_DELAY ms after the first one (or when flush is called).
+ *
+ * A document which isn't dirty is parsed again if the file was changed by someone else (i.e. config -open)
+ */
+
+class XMLPrefsFiles {
+
+    static final long FLUSH_DELAY = 1000;
+
+    private static class Doc {
+        Document document;
+        long lastModified, length;
+//        dirty until the version which contains the last change is on the disk
+        boolean dirty;
+        int changes;
+    }
+
+    private static final Map<String, Doc> docs = new HashMap<>();
+    private static final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor();
+    private static boolean scheduled = false;
+
+//    held while a file is written, so that an older version can't overwrite a newer one
+    private static final Object writeLock = new Object();
+
+    private static DocumentBuilder builder;
+    private static Transformer transformer;
+
+    private static final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    private XMLPrefsFiles() {}
+
+//    the caller must hold the lock on XMLPrefsFiles.class while it uses the document
+    static Document get(File file) throws Exception {
+        String path = file.getAbsolutePath();
+
+        Doc doc = docs.get(path);
+        if(doc != null && (doc.dirty || (doc.lastModified == file.lastModified() && doc.length == file.length()))) {
+            return doc.document;
+        }
+
+        if(builder == null) builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+
+        doc = new Doc();
+        doc.lastModified = file.lastModified();
+        doc.length = file.length();
+        doc.document = builder.parse(file);
+        docs.put(path, doc);
+
+        return doc.document;
+    }
+
+//    the document returned by get was changed
+    static synchronized void changed(File file) {
+        Doc doc = docs.get(file.getAbsolutePath());
+        if(doc == null) return;
+
+        doc.dirty = true;
+        doc.changes++;
+
+        if(!scheduled) {
+            scheduled = true;
+            flusher.schedule(flushRunnable, FLUSH_DELAY, TimeUnit.MILLISECONDS);
+        }
+    }
+
+//    the file was written without passing from here
+    static synchronized void forget(File file) {
+        Doc doc = docs.get(file.getAbsolutePath());
+        if(doc != null && !doc.dirty) docs.remove(file.getAbsolutePath());
+    }
+
+//    writes every dirty document, returns when they are on the disk
+    static void flush() {
+        synchronized (writeLock) {
+            List<File> files = new ArrayList<>();
+            List<String> contents = new ArrayList<>();
+            List<Doc> written = new ArrayList<>();
+            List<Integer> changes = new ArrayList<>();
+
+            synchronized (XMLPrefsFiles.class) {
+                scheduled = false;
+
+                for(Map.Entry<String, Doc> entry : docs.entrySet()) {
+                    Doc doc = entry.getValue();
+                    if(!doc.dirty) continue;
+
+                    String s = serialize(doc.document);
+                    if(s == null) continue;
+
+                    files.add(new File(entry.getKey()));
+                    contents.add(s);
+                    written.add(doc);
+                    changes.add(doc.changes);
+                }
+            }
+
+            for(int count = 0; count < files.size(); count++) {
+                File file = files.get(count);
+                boolean ok = write(file, contents.get(count));
+
+                synchronized (XMLPrefsFiles.class) {
+//                    the doc stays dirty (so it isn't replaced by the old file) and it's tried again later
+                    if(!ok) {
+                        if(!scheduled) {
+                            scheduled = true;
+                            flusher.schedule(flushRunnable, FLUSH_DELAY, TimeUnit.MILLISECONDS);
+                        }
+                        continue;
+                    }
+
+                    Doc doc = written.get(count);
+                    doc.lastModified = file.lastModified();
+                    doc.length = file.length();
+                    if(doc.changes == changes.get(count)) doc.dirty = false;
+                }
+            }
+        }
+    }
+
+    static synchronized String serialize(Document d) {
+        try {
+            if(transformer == null) transformer = TransformerFactory.newInstance().newTransformer();
+
+            StringWriter writer = new StringWriter();
+            transformer.transform(new DOMSource(d), new StreamResult(writer));
+
+            return XMLPrefsManager.fixNewlines(writer.toString());
+        } catch (Exception e) {
+            Tuils.log(e);
+            return null;
+        }
+    }
+
+//    the content goes to a temporary file which then replaces f, so f is never half written
+    static boolean write(File f, String s) {
+        File temp = new File(f.getAbsolutePath() + ".tmp");
+
+        try {
+            FileOutputStream stream = new FileOutputStream(temp);
+            stream.write(s.getBytes());
+
+            stream.flush();
+            stream.getFD().sync();
+            stream.close();
+
+            if(temp.renameTo(f)) return true;
+        } catch (Exception e) {
+            Tuils.log(e);
+        }
+
+        temp.delete();
+        return false;
+    }
+}
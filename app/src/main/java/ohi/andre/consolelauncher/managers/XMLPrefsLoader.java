@@ -0,0 +1,273 @@
+package ohi.andre.consolelauncher.managers;
+
+import android.util.Xml;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xmlpull.v1.XmlPullParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import ohi.andre.consolelauncher.tuils.Tuils;
+
+import static ohi.andre.consolelauncher.managers.XMLPrefsManager.VALUE_ATTRIBUTE;
+
+/**
+ * Reads an XML file in one pass with a pull parser, without building a DOM.
+ *
+ * The nodes named after an XMLPrefsSave go into the XMLPrefsList, the ones which were replaced or deleted are
+ * dropped and every other node is given to the NodeListener. The file is written only if something had to be
+ * dropped or added (a missing value, which takes the replaced one or the default).
+ *
+ * A file which is the same as the last time isn't parsed at all, its values and nodes come from XMLPrefsCache
+ */
+
+public class XMLPrefsLoader {
+
+    public static class Node {
+
+        public final String name;
+        final String[] attrNames, attrValues;
+
+        Node(String name, String[] attrNames, String[] attrValues) {
+            this.name = name;
+            this.attrNames = attrNames;
+            this.attrValues = attrValues;
+        }
+
+        public String get(String attr) {
+            for(int count = 0; count < attrNames.length; count++) {
+                if(attrNames[count].equals(attr)) return attrValues[count];
+            }
+            return null;
+        }
+
+        public boolean has(String attr) {
+            return get(attr) != null;
+        }
+    }
+
+    public interface NodeListener {
+        void onNode(Node node);
+    }
+
+    private XMLPrefsLoader() {}
+
+//    where the values of the files which didn't change are kept, until this is called every file is parsed.
+//    The cache is read here, so this should be called before the files are loaded
+    public static void useCache(File dir) {
+        XMLPrefsCache.init(dir);
+    }
+
+    public static void load(File file, String rootName, XMLPrefsManager.XMLPrefsSave[] enums, String[] deleted, XMLPrefsManager.XMLPrefsList values, NodeListener listener) throws Exception {
+        if(!file.exists() && !file.createNewFile()) return;
+
+        String signature = signature(enums, deleted);
+
+        XMLPrefsCache.Entry cached = XMLPrefsCache.get(file, signature);
+        if(cached != null) {
+            use(cached, values, listener);
+            return;
+        }
+
+//        taken before the file is read, so an edit made while it's read looks newer than the entry
+        long read = System.currentTimeMillis();
+        long lastModified = file.lastModified();
+        byte[] bytes;
+        try {
+            bytes = read(file);
+        } catch (Exception e) {
+            Tuils.log(e);
+            bytes = null;
+        }
+
+        long crc = 0;
+        if(bytes != null) {
+            CRC32 c = new CRC32();
+            c.update(bytes);
+            crc = c.getValue();
+
+            cached = XMLPrefsCache.get(file, signature, bytes.length, lastModified, crc, read);
+            if(cached != null) {
+                use(cached, values, listener);
+                return;
+            }
+        }
+
+        List<Node> nodes = bytes == null ? null : parse(new ByteArrayInputStream(bytes), rootName);
+        if(nodes == null) {
+            XMLPrefsManager.resetFile(file, rootName);
+            nodes = new ArrayList<>(0);
+        }
+
+        Map<String, XMLPrefsManager.XMLPrefsSave> labels = new HashMap<>();
+        Map<String, XMLPrefsManager.XMLPrefsSave> replaced = new HashMap<>();
+        for(XMLPrefsManager.XMLPrefsSave s : enums) {
+            labels.put(s.label(), s);
+
+            String r = s.hasReplaced();
+            if(r != null) replaced.put(r, s);
+        }
+
+        Set<String> deletedSet = deleted == null ? new HashSet<String>() : new HashSet<>(Arrays.asList(deleted));
+
+        Set<XMLPrefsManager.XMLPrefsSave> found = new HashSet<>();
+        Map<XMLPrefsManager.XMLPrefsSave, String> oldValues = new HashMap<>();
+        Set<String> removed = new HashSet<>();
+
+        List<XMLPrefsManager.XMLPrefsEntry> entries = new ArrayList<>();
+        List<Node> others = new ArrayList<>();
+
+        for(Node node : nodes) {
+            XMLPrefsManager.XMLPrefsSave s = labels.get(node.name);
+            if(s != null) {
+                String value = node.get(VALUE_ATTRIBUTE);
+                if(value == null) continue;
+
+                entries.add(new XMLPrefsManager.XMLPrefsEntry(node.name, value));
+                found.add(s);
+            } else if(replaced.containsKey(node.name)) {
+                s = replaced.get(node.name);
+                String value = node.get(VALUE_ATTRIBUTE);
+                if(value != null) oldValues.put(s, value);
+
+                removed.add(node.name);
+            } else if(deletedSet.contains(node.name)) {
+                removed.add(node.name);
+            } else {
+                others.add(node);
+                if(listener != null) listener.onNode(node);
+            }
+        }
+
+        List<String> addedNames = new ArrayList<>();
+        List<String> addedValues = new ArrayList<>();
+        for(XMLPrefsManager.XMLPrefsSave s : enums) {
+            if(found.contains(s)) continue;
+
+            String value = oldValues.get(s);
+            if(value == null) value = s.defaultValue();
+
+            entries.add(new XMLPrefsManager.XMLPrefsEntry(s.label(), value));
+            addedNames.add(s.label());
+            addedValues.add(value);
+        }
+
+        for(XMLPrefsManager.XMLPrefsEntry e : entries) values.add(e);
+
+//        the file is going to be written, it's cached the next time it's loaded
+        if(removed.size() > 0 || addedNames.size() > 0) fix(file, rootName, removed, addedNames, addedValues);
+        else if(bytes != null) XMLPrefsCache.put(file, signature, bytes.length, lastModified, crc, read, others, entries);
+    }
+
+    private static void use(XMLPrefsCache.Entry cached, XMLPrefsManager.XMLPrefsList values, NodeListener listener) {
+        cached.fill(values);
+        if(listener != null) for(Node node : cached.nodes) listener.onNode(node);
+    }
+
+//    the values depend on the file and on which nodes are known
+    private static String signature(XMLPrefsManager.XMLPrefsSave[] enums, String[] deleted) {
+        StringBuilder builder = new StringBuilder();
+        for(XMLPrefsManager.XMLPrefsSave s : enums) {
+            builder.append(s.label()).append(',');
+
+            String r = s.hasReplaced();
+            if(r != null) builder.append(r).append(',');
+        }
+        builder.append('|');
+        if(deleted != null) for(String d : deleted) builder.append(d).append(',');
+
+        return builder.toString();
+    }
+
+//    the nodes below the root, null if the file isn't valid
+    private static List<Node> parse(InputStream stream, String rootName) {
+        try {
+            XmlPullParser parser = Xml.newPullParser();
+            parser.setInput(stream, null);
+
+            List<Node> nodes = new ArrayList<>();
+            boolean rootFound = false;
+
+            int event;
+            while((event = parser.next()) != XmlPullParser.END_DOCUMENT) {
+                if(event != XmlPullParser.START_TAG) continue;
+
+                int depth = parser.getDepth();
+                if(depth == 1) {
+                    if(!parser.getName().equals(rootName)) return null;
+                    rootFound = true;
+                } else if(depth == 2) {
+                    int count = parser.getAttributeCount();
+                    String[] names = new String[count], values = new String[count];
+                    for(int c = 0; c < count; c++) {
+                        names[c] = parser.getAttributeName(c);
+                        values[c] = parser.getAttributeValue(c);
+                    }
+
+                    nodes.add(new Node(parser.getName(), names, values));
+                }
+            }
+
+            return rootFound ? nodes : null;
+        } catch (Exception e) {
+            Tuils.log(e);
+            return null;
+        }
+    }
+
+    private static byte[] read(File file) throws Exception {
+        InputStream stream = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+
+            byte[] buffer = new byte[4096];
+            int read;
+            while((read = stream.read(buffer)) != -1) out.write(buffer, 0, read);
+
+            return out.toByteArray();
+        } finally {
+            stream.close();
+        }
+    }
+
+    private static void fix(File file, String rootName, Set<String> removed, List<String> addedNames, List<String> addedValues) throws Exception {
+        synchronized (XMLPrefsFiles.class) {
+            Document d = XMLPrefsFiles.get(file);
+            Element root = (Element) d.getElementsByTagName(rootName).item(0);
+
+            NodeList children = root.getChildNodes();
+            for(int count = children.getLength() - 1; count >= 0; count--) {
+                org.w3c.dom.Node child = children.item(count);
+                if(child.getNodeType() == org.w3c.dom.Node.ELEMENT_NODE && removed.contains(child.getNodeName())) root.removeChild(child);
+            }
+
+            for(int count = 0; count < addedNames.size(); count++) {
+                String name = addedNames.get(count);
+
+//                it can be there without a value
+                Element em = (Element) root.getElementsByTagName(name).item(0);
+                if(em == null) {
+                    em = d.createElement(name);
+                    root.appendChild(em);
+                }
+                em.setAttribute(VALUE_ATTRIBUTE, addedValues.get(count));
+            }
+
+            XMLPrefsFiles.changed(file);
+        }
+    }
+}
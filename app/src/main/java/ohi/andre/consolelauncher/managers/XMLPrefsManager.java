@@ -10,22 +10,17 @@ import org.w3c.dom.NodeList;
 
 import java.io.File;
 import java.io.FileOutputStream;
-import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.regex.Pattern;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-
+import ohi.andre.consolelauncher.BuildConfig;
 import ohi.andre.consolelauncher.managers.notifications.NotificationManager;
 import ohi.andre.consolelauncher.tuils.Tuils;
 
@@ -433,6 +428,30 @@ public class XMLPrefsManager {
             public String defaultValue() {
                 return "#03A9F4";
             }
+        },
+        suggestions_debounce {
+            @Override
+            public String defaultValue() {
+                return "30";
+            }
+        },
+        suggestions_limit {
+            @Override
+            public String defaultValue() {
+                return "20";
+            }
+        },
+        show_more_suggestions {
+            @Override
+            public String defaultValue() {
+                return "true";
+            }
+        },
+        suggestions_deadline {
+            @Override
+            public String defaultValue() {
+                return "16";
+            }
         };
 
         @Override
@@ -737,7 +756,7 @@ public class XMLPrefsManager {
 
         @Override
         public void write(XMLPrefsSave save, String value) {
-            set(new File(Tuils.getFolder(), path), name(), save.label(), new String[] {VALUE_ATTRIBUTE}, new String[] {value});
+            if(set(new File(Tuils.getFolder(), path), name(), save.label(), new String[] {VALUE_ATTRIBUTE}, new String[] {value}) == null) values.set(save, value);
         }
 
         public XMLPrefsList getValues() {
@@ -754,12 +773,34 @@ public class XMLPrefsManager {
     public static class XMLPrefsEntry {
 
         public String key, value;
+//        value converted by the last get, thrown away when value or the requested class change
+        private volatile Typed typed;
 
         public XMLPrefsEntry(String key, String value) {
             this.key = key;
             this.value = value;
         }
 
+//        value already converted, i.e. by a previous start (see XMLPrefsCache)
+        XMLPrefsEntry(String key, String value, Typed typed) {
+            this(key, value);
+            this.typed = typed;
+        }
+
+        Typed typed() {
+            return typed;
+        }
+
+        public Object as(Class<?> c) {
+            Typed t = typed;
+            if(t == null || t.type != c || t.from != value) {
+                String v = value;
+                t = new Typed(v, c, transform(v, c));
+                typed = t;
+            }
+            return t.value;
+        }
+
         @Override
         public boolean equals(Object obj) {
             if(obj instanceof XMLPrefsEntry) return this == obj;
@@ -776,6 +817,8 @@ public class XMLPrefsManager {
     public static class XMLPrefsList {
 
         public List<XMLPrefsEntry> list = new ArrayList<>();
+//        the entries already found for an XMLPrefsSave, by ordinal
+        private XMLPrefsEntry[] slots;
 
         public void add(XMLPrefsEntry entry) {
             list.add(entry);
@@ -787,11 +830,45 @@ public class XMLPrefsManager {
 
         public XMLPrefsEntry get(Object o) {
             if(o instanceof Integer) return at((Integer) o);
+            if(o instanceof XMLPrefsSave && o instanceof Enum) return get((XMLPrefsSave) o);
 
             for(XMLPrefsEntry e : list) if(e.equals(o)) return e;
             return null;
         }
 
+        public XMLPrefsEntry get(XMLPrefsSave save) {
+            if(!(save instanceof Enum)) {
+                for(XMLPrefsEntry e : list) if(e.equals(save)) return e;
+                return null;
+            }
+
+            Enum<?> en = (Enum<?>) save;
+            int ordinal = en.ordinal();
+
+            XMLPrefsEntry[] s = slots;
+            if(s == null || s.length <= ordinal) {
+                s = new XMLPrefsEntry[en.getDeclaringClass().getEnumConstants().length];
+                slots = s;
+            }
+
+            XMLPrefsEntry entry = s[ordinal];
+            if(entry != null) return entry;
+
+            for(XMLPrefsEntry e : list) {
+                if(e.equals(save)) {
+                    s[ordinal] = e;
+                    return e;
+                }
+            }
+            return null;
+        }
+
+        public void set(XMLPrefsSave save, String value) {
+            XMLPrefsEntry entry = get(save);
+            if(entry != null) entry.value = value;
+            else add(save.label(), value);
+        }
+
         public XMLPrefsEntry at(int index) {
             return list.get(index);
         }
@@ -807,118 +884,79 @@ public class XMLPrefsManager {
         }
     }
 
-    private XMLPrefsManager() {}
-
-    public static void create() throws Exception {
-        File folder = Tuils.getFolder();
-
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder builder = factory.newDocumentBuilder();
-
-//        BufferedReader oldStream = null;
-//        HashMap<XMLPrefsSave, String> oldValues = null;
-//
-//        File old = new File(folder, "settings.txt");
-//        if(old.exists()) {
-//            oldStream = new BufferedReader(new FileReader(old));
-//            oldValues = getOld(oldStream);
-//        }
-
-        for(XMLPrefsRoot element : XMLPrefsRoot.values()) {
-            File file = new File(folder, element.path);
-            if(!file.exists() && !file.createNewFile()) continue;
-
-            Document d;
-            try {
-                d = builder.parse(file);
-            } catch (Exception e) {
-                resetFile(file, element.name());
-
-                d = builder.parse(file);
-            }
-
-            List<XMLPrefsSave> enums = element.enums;
-            if(enums == null) continue;
-
-            Map<String, XMLPrefsManager.XMLPrefsSave> replacedValues = new HashMap<>();
-            for(XMLPrefsManager.XMLPrefsSave s : NotificationManager.Options.values()) {
-                String r = s.hasReplaced();
-                if(r != null) replacedValues.put(r, s);
-            }
+    static class Typed {
 
-            String[] deleted = element.deleted();
+        final String from;
+        final Class<?> type;
+        final Object value;
 
-            Element root = (Element) d.getElementsByTagName(element.name()).item(0);
-            if(root == null) {
-                resetFile(file, element.name());
-                d = builder.parse(file);
-                root = (Element) d.getElementsByTagName(element.name()).item(0);
-            }
-            NodeList nodes = root.getElementsByTagName("*");
-
-            for(int count = 0; count < nodes.getLength(); count++) {
-                Node node = nodes.item(count);
-
-                String nn = node.getNodeName();
-                element.values.add(nn, node.getAttributes().getNamedItem(VALUE_ATTRIBUTE).getNodeValue());
+        Typed(String from, Class<?> type, Object value) {
+            this.from = from;
+            this.type = type;
+            this.value = value;
+        }
+    }
 
-                for(int en = 0; en < enums.size(); en++) {
-                    if(enums.get(en).label().equals(nn)) {
-                        enums.remove(en);
-                        break;
-                    } else if(replacedValues.containsKey(nn)) {
-                        XMLPrefsManager.XMLPrefsSave s = replacedValues.remove(nn);
+    private XMLPrefsManager() {}
 
-                        Element e = (Element) node;
-                        String oldValue = e.hasAttribute(VALUE_ATTRIBUTE) ? e.getAttribute(VALUE_ATTRIBUTE) : null;
-                        root.removeChild(e);
-
-                        replacedValues.put(oldValue, s);
-                    } else if(deleted != null) {
-                        int index = Tuils.find(nn, deleted);
-                        if(index != -1) {
-                            deleted[index] = null;
-                            Element e = (Element) node;
-                            root.removeChild(e);
+//    the files don't depend on each other, so each one is loaded on its own worker. This returns when all of them are loaded.
+//    XMLPrefsLoader.useCache has to be called before, so that the workers don't wait for the cache to be read
+    public static void create() throws Exception {
+        flush();
+
+        final File folder = Tuils.getFolder();
+        final Exception[] error = new Exception[1];
+
+        Map<String, Runnable> tasks = new LinkedHashMap<>();
+        for(final XMLPrefsRoot element : XMLPrefsRoot.values()) {
+            if(element.enums == null) continue;
+
+            tasks.put(element.path, new Runnable() {
+                @Override
+                public void run() {
+                    XMLPrefsList values = new XMLPrefsList();
+                    try {
+                        XMLPrefsLoader.load(new File(folder, element.path), element.name(), element.enums.toArray(new XMLPrefsSave[element.enums.size()]), element.deleted(), values, null);
+                    } catch (Exception e) {
+                        synchronized (error) {
+                            if(error[0] == null) error[0] = e;
                         }
                     }
+                    element.values = values;
                 }
-            }
-
-            if(enums.size() == 0) continue;
-
-            Set<Map.Entry<String, XMLPrefsSave>> es = replacedValues.entrySet();
-
-            for(XMLPrefsSave s : enums) {
-                String value = null;
-                for(Map.Entry<String, XMLPrefsManager.XMLPrefsSave> e : es) {
-                    if(e.getValue().equals(s)) value = e.getKey();
-                }
-                if(value == null) {
-
-//                    if(oldValues != null) {
-//                        for(Map.Entry<XMLPrefsSave, String> sm : oldValues.entrySet()) {
-//                            if(sm.getKey().equals(s)) {
-//                                value = sm.getValue();
-//                            }
-//                        }
-//                    }
-
-//                    if(value == null)
-                        value = s.defaultValue();
+            });
+        }
+        tasks.put(NotificationManager.PATH, new Runnable() {
+            @Override
+            public void run() {
+                NotificationManager.create();
+            }
+        });
+
+        final CountDownLatch latch = new CountDownLatch(tasks.size());
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(Runtime.getRuntime().availableProcessors(), tasks.size()));
+
+        long start = System.currentTimeMillis();
+        for(final Map.Entry<String, Runnable> task : tasks.entrySet()) {
+            pool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    long t = System.currentTimeMillis();
+                    try {
+                        task.getValue().run();
+                    } finally {
+                        if(BuildConfig.DEBUG) Log.d("andre", task.getKey() + " loaded in " + (System.currentTimeMillis() - t) + "ms");
+                        latch.countDown();
+                    }
                 }
-
-                Element em = d.createElement(s.label());
-                em.setAttribute(VALUE_ATTRIBUTE, value);
-                root.appendChild(em);
-
-                element.values.add(s.label(), value);
-            }
-
-            writeTo(d, file);
+            });
         }
+        pool.shutdown();
+
+        latch.await();
+        if(BuildConfig.DEBUG) Log.d("andre", "config: " + tasks.size() + " files loaded in " + (System.currentTimeMillis() - start) + "ms");
 
-//        if(old.exists()) old.delete();
+        if(error[0] != null) throw error[0];
     }
 
     public static Object transform(String s, Class<?> c) {
@@ -951,51 +989,43 @@ public class XMLPrefsManager {
     }
 
     public static void writeTo(Document d, File f) {
-        try {
-            TransformerFactory transformerFactory = TransformerFactory.newInstance();
-            Transformer transformer = transformerFactory.newTransformer();
-
-            DOMSource source = new DOMSource(d);
-            StringWriter writer = new StringWriter();
-            StreamResult result = new StreamResult(writer);
-            transformer.transform(source, result);
+        String s = XMLPrefsFiles.serialize(d);
+        if(s == null) return;
 
-            String s = fixNewlines(writer.toString());
-
-            FileOutputStream stream = new FileOutputStream(f);
-            stream.write(s.getBytes());
+        XMLPrefsFiles.write(f, s);
+        XMLPrefsFiles.forget(f);
+    }
 
-            stream.flush();
-            stream.close();
-        } catch (Exception e) {}
+//    the changes made by add, set, setMany and removeNode reach the disk a bit later, this waits for them
+    public static void flush() {
+        XMLPrefsFiles.flush();
     }
 
     public static String add(File file, String rootName, String elementName, String[] attributeNames, String[] attributeValues) {
-        try {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder builder = factory.newDocumentBuilder();
-
-            Document d;
+        synchronized (XMLPrefsFiles.class) {
             try {
-                d = builder.parse(file);
-            } catch (Exception e) {
-                return e.toString();
-            }
+                Document d;
+                try {
+                    d = XMLPrefsFiles.get(file);
+                } catch (Exception e) {
+                    return e.toString();
+                }
 
-            Element root = (Element) d.getElementsByTagName(rootName).item(0);
+                Element root = (Element) d.getElementsByTagName(rootName).item(0);
 
-            Element element = d.createElement(elementName);
-            for(int c = 0; c < attributeNames.length; c++) {
-                if(attributeValues[c] == null) continue;
-                element.setAttribute(attributeNames[c], attributeValues[c]);
-            }
-            root.appendChild(element);
+                Element element = d.createElement(elementName);
+                for(int c = 0; c < attributeNames.length; c++) {
+                    if(attributeValues[c] == null) continue;
+                    element.setAttribute(attributeNames[c], attributeValues[c]);
+                }
+                root.appendChild(element);
 
-            writeTo(d, file);
-        } catch (Exception e) {
-            return e.toString();
+                XMLPrefsFiles.changed(file);
+            } catch (Exception e) {
+                return e.toString();
+            }
+            return null;
         }
-        return null;
     }
 
     public static String set(File file, String rootName, String elementName, String[] attributeNames, String[] attributeValues) {
@@ -1006,120 +1036,117 @@ public class XMLPrefsManager {
     }
 
     public static String setMany(File file, String rootName, String elementNames[], String[] attributeNames, String[][] attributeValues) {
-        try {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder builder = factory.newDocumentBuilder();
-
-            Document d;
+        synchronized (XMLPrefsFiles.class) {
             try {
-                d = builder.parse(file);
-            } catch (Exception e) {
-                return e.toString();
-            }
+                Document d;
+                try {
+                    d = XMLPrefsFiles.get(file);
+                } catch (Exception e) {
+                    return e.toString();
+                }
 
-            Element root = (Element) d.getElementsByTagName(rootName).item(0);
-            NodeList nodes = root.getElementsByTagName("*");
+                Element root = (Element) d.getElementsByTagName(rootName).item(0);
+                NodeList nodes = root.getElementsByTagName("*");
 
-            for(int count = 0; count < nodes.getLength(); count++) {
-                Node node = nodes.item(count);
+                for(int count = 0; count < nodes.getLength(); count++) {
+                    Node node = nodes.item(count);
 
-                int index = Tuils.find(node.getNodeName(), elementNames);
-                if(index != -1) {
-                    Element e = (Element) node;
+                    int index = Tuils.find(node.getNodeName(), elementNames);
+                    if(index != -1) {
+                        Element e = (Element) node;
 
-                    for(int c = 0; c < attributeNames.length; c++) {
-                        if(attributeValues[index][c] == null) continue;
-                        e.setAttribute(attributeNames[c], attributeValues[index][c]);
-                    }
+                        for(int c = 0; c < attributeNames.length; c++) {
+                            if(attributeValues[index][c] == null) continue;
+                            e.setAttribute(attributeNames[c], attributeValues[index][c]);
+                        }
 
-                    writeTo(d, file);
-                    return null;
+                        XMLPrefsFiles.changed(file);
+                        return null;
+                    }
                 }
-            }
 
-//            it wasn't found
-            for(int count = 0; count < elementNames.length; count++) {
-                Element element = d.createElement(elementNames[count]);
-                for(int c = 0; c < attributeNames.length; c++) {
-                    if(attributeValues[count][c] == null) continue;
-                    element.setAttribute(attributeNames[c], attributeValues[count][c]);
+//                it wasn't found
+                for(int count = 0; count < elementNames.length; count++) {
+                    Element element = d.createElement(elementNames[count]);
+                    for(int c = 0; c < attributeNames.length; c++) {
+                        if(attributeValues[count][c] == null) continue;
+                        element.setAttribute(attributeNames[c], attributeValues[count][c]);
+                    }
+                    root.appendChild(element);
                 }
-                root.appendChild(element);
-            }
 
-            writeTo(d, file);
-        } catch (Exception e) {
-            Log.e("andre", "", e);
-            return e.toString();
+                XMLPrefsFiles.changed(file);
+            } catch (Exception e) {
+                Log.e("andre", "", e);
+                return e.toString();
+            }
+            return null;
         }
-        return null;
     }
 
     public static boolean removeNode(File file, String rootName, String nodeName) {
-        try {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder builder = factory.newDocumentBuilder();
-
-            Document d;
+        synchronized (XMLPrefsFiles.class) {
             try {
-                d = builder.parse(file);
-            } catch (Exception e) {
-                return false;
-            }
+                Document d;
+                try {
+                    d = XMLPrefsFiles.get(file);
+                } catch (Exception e) {
+                    return false;
+                }
 
-            Element root = (Element) d.getElementsByTagName(rootName).item(0);
-            NodeList nodes = root.getElementsByTagName("*");
+                Element root = (Element) d.getElementsByTagName(rootName).item(0);
+                NodeList nodes = root.getElementsByTagName("*");
 
-            for(int count = 0; count < nodes.getLength(); count++) {
-                Node node = nodes.item(count);
+                for(int count = 0; count < nodes.getLength(); count++) {
+                    Node node = nodes.item(count);
 
-                if(node.getNodeName().equalsIgnoreCase(nodeName)) {
-                    root.removeChild(node);
-                    writeTo(d, file);
-                    return true;
+                    if(node.getNodeName().equalsIgnoreCase(nodeName)) {
+                        root.removeChild(node);
+                        XMLPrefsFiles.changed(file);
+                        return true;
+                    }
                 }
-            }
-        } catch (Exception e) {}
+            } catch (Exception e) {}
 
-        return false;
+            return false;
+        }
     }
 
     public static String[] getAttrValues(File file, String rootName, String nodeName, String[] attrNames) {
-        try {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder builder = factory.newDocumentBuilder();
-
-            Document d;
+        synchronized (XMLPrefsFiles.class) {
             try {
-                d = builder.parse(file);
-            } catch (Exception e) {
-                return null;
-            }
+                Document d;
+                try {
+                    d = XMLPrefsFiles.get(file);
+                } catch (Exception e) {
+                    return null;
+                }
 
-            Element root = (Element) d.getElementsByTagName(rootName).item(0);
-            NodeList nodes = root.getElementsByTagName("*");
+                Element root = (Element) d.getElementsByTagName(rootName).item(0);
+                NodeList nodes = root.getElementsByTagName("*");
 
-            for(int count = 0; count < nodes.getLength(); count++) {
-                Node node = nodes.item(count);
+                for(int count = 0; count < nodes.getLength(); count++) {
+                    Node node = nodes.item(count);
 
-                if(node.getNodeName().equals(nodeName)) {
-                    Element e = (Element) node;
+                    if(node.getNodeName().equals(nodeName)) {
+                        Element e = (Element) node;
 
-                    String[] values = new String[attrNames.length];
-                    for(int c = 0; c < attrNames.length; c++) values[count] = e.getAttribute(attrNames[c]);
+                        String[] values = new String[attrNames.length];
+                        for(int c = 0; c < attrNames.length; c++) values[count] = e.getAttribute(attrNames[c]);
 
-                    return values;
+                        return values;
+                    }
                 }
-            }
-        } catch (Exception e) {}
+            } catch (Exception e) {}
 
-        return null;
+            return null;
+        }
     }
 
     public static <T> T get(Class<T> c, XMLPrefsManager.XMLPrefsSave prefsSave) {
         if(prefsSave != null) {
             try {
-                return (T) transform(prefsSave.parent().getValues().get(prefsSave).value, c);
+                return (T) prefsSave.parent().getValues().get(prefsSave).as(c);
             } catch (Exception e) {
                 return (T) transform(prefsSave.defaultValue(), c);
             }
@@ -1129,7 +1156,7 @@ public class XMLPrefsManager {
 
     public static int getColor(XMLPrefsManager.XMLPrefsSave prefsSave) {
         try {
-            return (int) transform(prefsSave.parent().getValues().get(prefsSave).value, Color.class);
+            return (int) prefsSave.parent().getValues().get(prefsSave).as(Color.class);
         } catch (Exception e) {
             String def = prefsSave.defaultValue();
             if(def == null || def.length() == 0) {
@@ -1147,6 +1174,8 @@ public class XMLPrefsManager {
             stream.write(("</" + name + ">\n").getBytes());
             stream.flush();
             stream.close();
+
+            XMLPrefsFiles.forget(f);
             return true;
         } catch (Exception e) {
             return false;
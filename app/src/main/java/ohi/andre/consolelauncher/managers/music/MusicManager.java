@@ -12,9 +12,11 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
-import ohi.andre.comparestring.Compare;
 import ohi.andre.consolelauncher.managers.XMLPrefsManager;
+import ohi.andre.consolelauncher.tuils.FuzzyMatcher;
+import ohi.andre.consolelauncher.tuils.PrefixIndex;
 import ohi.andre.consolelauncher.tuils.Tuils;
+import ohi.andre.consolelauncher.tuils.TypoIndex;
 import ohi.andre.consolelauncher.tuils.broadcast.HeadsetBroadcast;
 import ohi.andre.consolelauncher.tuils.interfaces.Outputable;
 
@@ -25,6 +27,9 @@ public class MusicManager implements OnCompletionListener {
     public static final boolean USE_SCROLL_COMPARE = true;
 
     private List<File> files;
+    private PrefixIndex<String> namesIndex = new PrefixIndex<>(true);
+    private List<FuzzyMatcher.Candidate> candidates = new ArrayList<>(0);
+    private TypoIndex<String> typoIndex = new TypoIndex<>();
     private MediaPlayer mp;
 
     private int currentSongIndex = 0;
@@ -79,7 +84,10 @@ public class MusicManager implements OnCompletionListener {
 
     //	return a song by incomplete name
     public String getSong(String s, int minRate) {
-        return Compare.similarString(getNames(), s, minRate, USE_SCROLL_COMPARE);
+        FuzzyMatcher.Candidate c = FuzzyMatcher.best(candidates, s, minRate, USE_SCROLL_COMPARE);
+        if(c != null) return c.label;
+
+        return typoIndex.closest(s);
     }
 
     //	return the path by complete name
@@ -112,6 +120,25 @@ public class MusicManager implements OnCompletionListener {
         return names;
     }
 
+    //	return the names which start with prefix (case insensitive)
+    public List<String> getNames(String prefix) {
+        return getNames(prefix, null);
+    }
+
+    //	normalizedNames (if not null) gets the normalized form of each name
+    public List<String> getNames(String prefix, List<String> normalizedNames) {
+        return namesIndex.prefixed(prefix, normalizedNames);
+    }
+
+    //	the names ready to be used by FuzzyMatcher
+    public List<FuzzyMatcher.Candidate> getCandidates() {
+        return candidates;
+    }
+
+    public int getNamesVersion() {
+        return namesIndex.version();
+    }
+
     //	return paths
     public List<String> getPaths() {
         if(files == null) {
@@ -216,6 +243,15 @@ public class MusicManager implements OnCompletionListener {
             files = Tuils.getSongsInFolder(songsFolder);
         }
 
+        namesIndex.clear();
+        if(files != null) for(File file : files) namesIndex.add(file.getName(), file.getName());
+
+        candidates = FuzzyMatcher.candidates(getNames());
+
+        TypoIndex<String> index = new TypoIndex<>();
+        if(files != null) for(File file : files) index.add(file.getName(), file.getName());
+        typoIndex = index;
+
     }
 
     @Override
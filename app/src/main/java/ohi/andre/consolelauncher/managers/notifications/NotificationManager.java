@@ -4,35 +4,24 @@ import android.annotation.TargetApi;
 import android.os.Build;
 import android.util.Log;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.PrintStream;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.regex.Pattern;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-
+import ohi.andre.consolelauncher.managers.XMLPrefsLoader;
 import ohi.andre.consolelauncher.managers.XMLPrefsManager;
 import ohi.andre.consolelauncher.tuils.Tuils;
 
 import static ohi.andre.consolelauncher.managers.XMLPrefsManager.VALUE_ATTRIBUTE;
-import static ohi.andre.consolelauncher.managers.XMLPrefsManager.resetFile;
 import static ohi.andre.consolelauncher.managers.XMLPrefsManager.set;
 import static ohi.andre.consolelauncher.managers.XMLPrefsManager.setMany;
-import static ohi.andre.consolelauncher.managers.XMLPrefsManager.writeTo;
 
 /**
  * Created by francescoandreuzzi on 29/04/2017.
@@ -126,7 +115,7 @@ public class NotificationManager implements XMLPrefsManager.XmlPrefsElement {
 
     @Override
     public void write(XMLPrefsManager.XMLPrefsSave save, String value) {
-        set(new File(Tuils.getFolder(), PATH), NAME, save.label(), new String[] {VALUE_ATTRIBUTE}, new String[] {value});
+        if(set(new File(Tuils.getFolder(), PATH), NAME, save.label(), new String[] {VALUE_ATTRIBUTE}, new String[] {value}) == null && values != null) values.set(save, value);
     }
 
     private static XMLPrefsManager.XMLPrefsList values;
@@ -137,7 +126,8 @@ public class NotificationManager implements XMLPrefsManager.XmlPrefsElement {
 
     private NotificationManager() {}
 
-    public static void create() {
+//    called by XMLPrefsManager.create and by NotificationService, maybe at the same time
+    public static synchronized void create() {
         instance = new NotificationManager();
 
         if(created) return;
@@ -148,77 +138,34 @@ public class NotificationManager implements XMLPrefsManager.XmlPrefsElement {
         applies = new HashMap<>();
         values = new XMLPrefsManager.XMLPrefsList();
 
-        try {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder builder = factory.newDocumentBuilder();
-
-            File file = new File(Tuils.getFolder(), PATH);
-            if(!file.exists() && !file.createNewFile()) return;
-
-            Document d;
-            try {
-                d = builder.parse(file);
-            } catch (Exception e) {
-                resetFile(file, NAME);
-
-                d = builder.parse(file);
-            }
-
-            List<Options> enums = new ArrayList<>(Arrays.asList(Options.values()));
-
-            Element root = (Element) d.getElementsByTagName(NAME).item(0);
-            if(root == null) {
-                resetFile(file, NAME);
-                d = builder.parse(file);
-                root = (Element) d.getElementsByTagName(NAME).item(0);
-            }
-            NodeList nodes = root.getElementsByTagName("*");
-
-            Map<String, XMLPrefsManager.XMLPrefsSave> replacedValues = new HashMap<>();
-            for(XMLPrefsManager.XMLPrefsSave s : Options.values()) {
-                String r = s.hasReplaced();
-                if(r != null) replacedValues.put(r, s);
-            }
-
-            Main:
-            for(int count = 0; count < nodes.getLength(); count++) {
-                Node node = nodes.item(count);
-
-                String nn = node.getNodeName();
-                if(Tuils.find(nn, (List) enums) != -1) {
-                    values.add(nn, node.getAttributes().getNamedItem(VALUE_ATTRIBUTE).getNodeValue());
-
-                    for(int en = 0; en < enums.size(); en++) {
-                        if(enums.get(en).label().equals(nn)) {
-                            enums.remove(en);
-                            break;
-                        }
-                    }
-                } else if(nn.equals(FILTER_NODE)) {
-                    if(node.getNodeType() == Node.ELEMENT_NODE) {
-                        Element e = (Element) node;
+        XMLPrefsManager.flush();
 
-                        String regex = e.hasAttribute(VALUE_ATTRIBUTE) ? e.getAttribute(VALUE_ATTRIBUTE) : null;
-                        if(regex == null) continue;
-
-                        String on = e.hasAttribute(ON_ATTRIBUTE) ? e.getAttribute(ON_ATTRIBUTE) : null;
+        try {
+            XMLPrefsLoader.load(new File(Tuils.getFolder(), PATH), NAME, Options.values(), instance.deleted(), values, new XMLPrefsLoader.NodeListener() {
+                @Override
+                public void onNode(XMLPrefsLoader.Node node) {
+                    if(node.name.equals(FILTER_NODE)) {
+                        String regex = node.get(VALUE_ATTRIBUTE);
+                        if(regex == null) return;
+
+                        String on = node.get(ON_ATTRIBUTE);
                         if(on == null) on = "text";
 
                         int id;
                         try {
-                            id = e.hasAttribute(ID_ATTRIBUTE) ? Integer.parseInt(e.getAttribute(ID_ATTRIBUTE)) : -1;
+                            id = node.has(ID_ATTRIBUTE) ? Integer.parseInt(node.get(ID_ATTRIBUTE)) : -1;
                         } catch (NumberFormatException f) {
                             id = -1;
                         }
 
                         Filter filter = Filter.getInstance(regex, on.equals("title") ? TITLE : TEXT);
-                        if(filter == null) continue;
+                        if(filter == null) return;
 
                         if(id != -1) {
                             for(FilterGroup group : groups) {
                                 if(id == group.id) {
                                     group.add(filter);
-                                    continue Main;
+                                    return;
                                 }
                             }
                         }
@@ -226,68 +173,28 @@ public class NotificationManager implements XMLPrefsManager.XmlPrefsElement {
                         FilterGroup group = new FilterGroup(id);
                         group.add(filter);
                         groups.add(group);
-                    }
-                } else if(nn.equals(APPLY_NODE)) {
-                    if(node.getNodeType() == Node.ELEMENT_NODE) {
-                        Element e = (Element) node;
-
+                    } else if(node.name.equals(APPLY_NODE)) {
                         int id;
                         try {
-                            id = e.hasAttribute(ID_ATTRIBUTE) ? Integer.parseInt(e.getAttribute(ID_ATTRIBUTE)) : -1;
+                            id = node.has(ID_ATTRIBUTE) ? Integer.parseInt(node.get(ID_ATTRIBUTE)) : -1;
                         } catch (NumberFormatException f) {
-                            continue;
+                            return;
                         }
 
-                        String pkg = e.hasAttribute(PACKAGE_ATTRIBUTE) ? e.getAttribute(PACKAGE_ATTRIBUTE) : null;
-                        if(pkg == null) continue;
+                        String pkg = node.get(PACKAGE_ATTRIBUTE);
+                        if(pkg == null) return;
 
                         applies.put(id, pkg);
-                    }
-                } else if(replacedValues.containsKey(nn)) {
-                    XMLPrefsManager.XMLPrefsSave s = replacedValues.remove(nn);
-
-                    Element e = (Element) node;
-                    String oldValue = e.hasAttribute(VALUE_ATTRIBUTE) ? e.getAttribute(VALUE_ATTRIBUTE) : null;
-                    root.removeChild(e);
-
-                    replacedValues.put(oldValue, s);
-                }
-//                todo support delete
-                else {
-                    if(node.getNodeType() == Node.ELEMENT_NODE) {
-                        Element e = (Element) node;
-
-                        NotificatedApp app;
-
-                        boolean enabled = !e.hasAttribute(ENABLED_ATTRIBUTE) || Boolean.parseBoolean(e.getAttribute(ENABLED_ATTRIBUTE));
+                    } else {
+                        boolean enabled = !node.has(ENABLED_ATTRIBUTE) || Boolean.parseBoolean(node.get(ENABLED_ATTRIBUTE));
 
                         String color = null;
-                        if(enabled) color = e.hasAttribute(COLOR_ATTRIBUTE) ? e.getAttribute(COLOR_ATTRIBUTE) : null;
+                        if(enabled) color = node.get(COLOR_ATTRIBUTE);
 
-                        app = new NotificatedApp(nn, color, enabled);
-                        apps.add(app);
+                        apps.add(new NotificatedApp(node.name, color, enabled));
                     }
                 }
-            }
-
-            if(enums.size() > 0) {
-                Set<Map.Entry<String, XMLPrefsManager.XMLPrefsSave>> es = replacedValues.entrySet();
-                for(XMLPrefsManager.XMLPrefsSave s : enums) {
-                    String value = null;
-                    for(Map.Entry<String, XMLPrefsManager.XMLPrefsSave> e : es) {
-                        if(e.getValue().equals(s)) value = e.getKey();
-                    }
-                    if(value == null) value = s.defaultValue();
-
-                    Element em = d.createElement(s.label());
-                    em.setAttribute(VALUE_ATTRIBUTE, value);
-                    root.appendChild(em);
-
-                    values.add(s.label(), value);
-                }
-
-                writeTo(d, file);
-            }
+            });
         } catch (Exception e) {
             Log.e("andre", "", e);
         }
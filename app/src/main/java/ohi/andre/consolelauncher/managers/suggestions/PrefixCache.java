@@ -0,0 +1,81 @@
+package ohi.andre.consolelauncher.managers.suggestions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ohi.andre.consolelauncher.tuils.Compare;
+
+/**
+ * Remembers the matches of the last prefix query made against a source. When the user types one more
+ * char the new matches are a subset of the old ones, so they can be obtained refining the previous set
+ * instead of querying the whole source again
+ */
+
+class PrefixCache<T> {
+
+    private final boolean normalize;
+
+    private String prefix;
+    private Object source;
+    private int version;
+
+    private List<T> values;
+    private List<String> keys;
+
+    PrefixCache(boolean normalize) {
+        this.normalize = normalize;
+    }
+
+//    returns null if the cache can't be used (backspace, different source, source changed)
+    synchronized List<T> narrow(String prefix, Object source, int version) {
+        if(this.prefix == null || this.source != source || this.version != version) return null;
+
+        prefix = key(prefix);
+        if(!prefix.startsWith(this.prefix)) return null;
+        if(prefix.length() == this.prefix.length()) return new ArrayList<>(values);
+
+        List<T> newValues = new ArrayList<>();
+        List<String> newKeys = new ArrayList<>();
+        for(int count = 0; count < keys.size(); count++) {
+            String key = keys.get(count);
+            if(key.startsWith(prefix)) {
+                newKeys.add(key);
+                newValues.add(values.get(count));
+            }
+        }
+
+        this.prefix = prefix;
+        this.values = newValues;
+        this.keys = newKeys;
+
+        return new ArrayList<>(newValues);
+    }
+
+//    labels.get(i) must be the label of values.get(i)
+    synchronized void put(String prefix, Object source, int version, List<T> values, List<String> labels) {
+        List<String> keys = new ArrayList<>(labels.size());
+        for(String label : labels) keys.add(key(label));
+
+        putKeys(prefix, source, version, values, keys);
+    }
+
+//    keys are already in their final form (normalized if the cache normalizes)
+    synchronized void putKeys(String prefix, Object source, int version, List<T> values, List<String> keys) {
+        this.prefix = key(prefix);
+        this.source = source;
+        this.version = version;
+        this.values = new ArrayList<>(values);
+        this.keys = new ArrayList<>(keys);
+    }
+
+    synchronized void clear() {
+        prefix = null;
+        source = null;
+        values = null;
+        keys = null;
+    }
+
+    private String key(String s) {
+        return normalize ? Compare.normalize(s) : s.trim();
+    }
+}
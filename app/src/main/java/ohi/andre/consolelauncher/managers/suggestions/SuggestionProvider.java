@@ -0,0 +1,12 @@
+package ohi.andre.consolelauncher.managers.suggestions;
+
+import java.util.List;
+
+/**
+ * A source of suggestions (apps, commands, aliases...). Providers may run concurrently, so they must only add
+ * to the list they receive
+ */
+
+public interface SuggestionProvider {
+    void suggest(List<SuggestionsManager.Suggestion> suggestions);
+}
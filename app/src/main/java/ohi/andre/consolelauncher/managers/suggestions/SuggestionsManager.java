@@ -2,11 +2,18 @@ package ohi.andre.consolelauncher.managers.suggestions;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import ohi.andre.comparestring.Compare;
 import ohi.andre.consolelauncher.commands.Command;
 import ohi.andre.consolelauncher.commands.CommandAbstraction;
 import ohi.andre.consolelauncher.commands.CommandTuils;
@@ -17,10 +24,14 @@ import ohi.andre.consolelauncher.commands.specific.PermanentSuggestionCommand;
 import ohi.andre.consolelauncher.managers.AliasManager;
 import ohi.andre.consolelauncher.managers.AppsManager;
 import ohi.andre.consolelauncher.managers.ContactManager;
+import ohi.andre.consolelauncher.managers.DirCache;
 import ohi.andre.consolelauncher.managers.FileManager;
+import ohi.andre.consolelauncher.managers.FrecencyManager;
 import ohi.andre.consolelauncher.managers.music.MusicManager;
 import ohi.andre.consolelauncher.managers.XMLPrefsManager;
 import ohi.andre.consolelauncher.managers.notifications.NotificationManager;
+import ohi.andre.consolelauncher.tuils.Compare;
+import ohi.andre.consolelauncher.tuils.FuzzyMatcher;
 import ohi.andre.consolelauncher.tuils.Tuils;
 
 import static ohi.andre.consolelauncher.commands.CommandTuils.xmlPrefsEntrys;
@@ -45,15 +56,70 @@ public class SuggestionsManager {
 
     private final int FIRST_INTERVAL = 7;
 
+    private final String MORE_TEXT = "...";
+
     private boolean showAliasDefault, showAliasWasSet = false;
 
+//    at most limit suggestions are ranked and shown, <= 0 means no limit
+    private int limit;
+    private boolean showMore;
+
+//    matches of the last prefix query of each source, refined while the user keeps typing
+    private PrefixCache<String> appsCache = new PrefixCache<>(true);
+    private PrefixCache<String> songsCache = new PrefixCache<>(true);
+    private PrefixCache<String> commandsCache = new PrefixCache<>(false);
+    private PrefixCache<String> aliasesCache = new PrefixCache<>(false);
+    private PrefixCache<ContactManager.Contact> contactsCache = new PrefixCache<>(true);
+
+//    before only changes when a space is typed, so the command it contains is parsed once for each
+//    before, current directory, su state and apps list
+    private String parsedBefore;
+    private File parsedDirectory;
+    private boolean parsedSu;
+    private int parsedAppsVersion;
+    private Command parsedCommand;
+
+//    providers which run together share a small pool, the ones which don't finish within deadline ms are shown
+//    by a follow-up refresh (see setOnLateSuggestions)
+    private int deadline;
+    private ExecutorService providersPool;
+    private volatile ProvidersBatch lastBatch;
+    private Runnable onLateSuggestions;
+
+    public void setOnLateSuggestions(Runnable onLateSuggestions) {
+        this.onLateSuggestions = onLateSuggestions;
+    }
+
+//    must be called from the thread which asks for the suggestions
+    public void dispose() {
+        ProvidersBatch batch = lastBatch;
+        if(batch != null) batch.cancel();
+        lastBatch = null;
+
+        if(providersPool != null) {
+            providersPool.shutdownNow();
+            providersPool = null;
+        }
+    }
+
     public Suggestion[] getSuggestions(MainPack info, String before, String lastWord) {
+        return getSuggestions(info, before, lastWord, 0);
+    }
+
+//    page > 0 is used to show the suggestions which didn't fit in the previous pages
+    public Suggestion[] getSuggestions(MainPack info, String before, String lastWord, int page) {
 
         if(!showAliasWasSet) {
             showAliasDefault = XMLPrefsManager.get(boolean.class, XMLPrefsManager.Behavior.suggest_alias_default);
+
+            limit = XMLPrefsManager.get(int.class, XMLPrefsManager.Suggestions.suggestions_limit);
+            showMore = XMLPrefsManager.get(boolean.class, XMLPrefsManager.Suggestions.show_more_suggestions);
+            deadline = XMLPrefsManager.get(int.class, XMLPrefsManager.Suggestions.suggestions_deadline);
+
             showAliasWasSet = true;
         }
 
+
         List<Suggestion> suggestionList = new ArrayList<>();
 
         before = before.trim();
@@ -78,15 +144,12 @@ public class SuggestionsManager {
 
                 if(showAliasDefault) suggestAlias(info.aliasManager, suggestionList, lastWord);
 
-                return suggestionList.toArray(new Suggestion[suggestionList.size()]);
+                return page(suggestionList, false, page);
             }
 //            lastword == 0 && before > 0
             else {
 //                check if this is a command
-                Command cmd = null;
-                try {
-                    cmd = CommandTuils.parse(before, info, true);
-                } catch (Exception e) {}
+                Command cmd = parse(info, before);
 
                 if (cmd != null) {
 
@@ -122,10 +185,7 @@ public class SuggestionsManager {
         else {
             if (before.length() > 0) {
 //                lastword > 0 && before > 0
-                Command cmd = null;
-                try {
-                    cmd = CommandTuils.parse(before, info, true);
-                } catch (Exception e) {}
+                Command cmd = parse(info, before);
 
                 if (cmd != null) {
                     if(cmd.cmd instanceof PermanentSuggestionCommand) {
@@ -148,15 +208,206 @@ public class SuggestionsManager {
                 }
             } else {
 //                lastword > 0 && before = 0
-                suggestCommand(info, suggestionList, lastWord, before);
-                suggestAlias(info.aliasManager, suggestionList, lastWord);
-                suggestApp(info, suggestionList, lastWord, Tuils.EMPTYSTRING);
+                final MainPack pack = info;
+                final String word = lastWord, b = before;
+
+//                the versions of the apps and of the aliases, so that the results of a batch aren't used after they changed
+                String key = before + Tuils.NEWLINE + lastWord + Tuils.NEWLINE + info.appsManager.getAppLabelsVersion() + Tuils.SPACE + info.aliasManager.getAliasesVersion();
+                runProviders(key, suggestionList,
+                        new SuggestionProvider() {
+                            @Override
+                            public void suggest(List<Suggestion> suggestions) {
+                                suggestCommand(pack, suggestions, word, b);
+                            }
+                        },
+                        new SuggestionProvider() {
+                            @Override
+                            public void suggest(List<Suggestion> suggestions) {
+                                suggestAlias(pack.aliasManager, suggestions, word);
+                            }
+                        },
+                        new SuggestionProvider() {
+                            @Override
+                            public void suggest(List<Suggestion> suggestions) {
+                                suggestApp(pack, suggestions, word, Tuils.EMPTYSTRING);
+                            }
+                        });
+            }
+        }
+
+        setFrecency(info, suggestionList);
+        return page(suggestionList, true, page);
+    }
+
+//    runs the providers concurrently and adds what they found within the deadline, in the same order as the providers.
+//    Asking again for the same key collects the results of the providers which were late, without running them again:
+//    the key has to change when what the providers read changes
+    private void runProviders(String key, List<Suggestion> suggestions, SuggestionProvider... providers) {
+        if(providers.length == 1 || deadline <= 0) {
+            for(SuggestionProvider p : providers) p.suggest(suggestions);
+            return;
+        }
+
+        if(providersPool == null) providersPool = Executors.newFixedThreadPool(Math.min(providers.length, Math.max(2, Runtime.getRuntime().availableProcessors() - 1)));
+
+        ProvidersBatch batch = lastBatch;
+        if(batch == null || !batch.key.equals(key)) {
+            if(batch != null) batch.cancel();
+
+            batch = new ProvidersBatch(key, providers);
+            lastBatch = batch;
+        }
+
+        long end = System.currentTimeMillis() + deadline;
+        for(Future<List<Suggestion>> f : batch.futures) {
+            try {
+                long wait = end - System.currentTimeMillis();
+                suggestions.addAll(wait > 0 ? f.get(wait, TimeUnit.MILLISECONDS) : f.get(0, TimeUnit.MILLISECONDS));
+            } catch (TimeoutException e) {
+                batch.late = true;
+            } catch (Exception e) {}
+        }
+
+//        the providers may have finished right after the timeout, before seeing late = true
+        if(batch.late && batch.remaining.get() == 0) batch.onLate();
+    }
+
+    private class ProvidersBatch {
+
+        final String key;
+        final List<Future<List<Suggestion>>> futures = new ArrayList<>();
+        final AtomicInteger remaining;
+
+        volatile boolean late = false;
+        volatile boolean cancelled = false;
+
+        ProvidersBatch(String key, SuggestionProvider[] providers) {
+            this.key = key;
+            this.remaining = new AtomicInteger(providers.length);
+
+            for(final SuggestionProvider p : providers) {
+                futures.add(providersPool.submit(new Callable<List<Suggestion>>() {
+                    @Override
+                    public List<Suggestion> call() throws Exception {
+                        List<Suggestion> found = new ArrayList<>();
+                        try {
+                            p.suggest(found);
+                        } finally {
+                            if(remaining.decrementAndGet() == 0 && late) onLate();
+                        }
+                        return found;
+                    }
+                }));
+            }
+        }
+
+        void onLate() {
+            if(!cancelled && lastBatch == this && onLateSuggestions != null) onLateSuggestions.run();
+        }
+
+        void cancel() {
+            cancelled = true;
+            for(Future<List<Suggestion>> f : futures) f.cancel(true);
+        }
+    }
+
+//    suggestions with the same rate are ranked by how often and how recently they were used
+    private void setFrecency(MainPack info, List<Suggestion> suggestions) {
+        for(Suggestion s : suggestions) {
+            switch (s.type) {
+                case Suggestion.TYPE_APP:
+                    s.frecency = info.appsManager.getFrecency(s.text);
+                    break;
+                case Suggestion.TYPE_COMMAND:
+                    s.frecency = FrecencyManager.score(FrecencyManager.COMMAND, s.text);
+                    break;
+                case Suggestion.TYPE_ALIAS:
+                    s.frecency = FrecencyManager.score(FrecencyManager.ALIAS, s.text);
+                    break;
+                case Suggestion.TYPE_CONTACT:
+                    if(s.object instanceof ContactManager.Contact) {
+                        for(String number : ((ContactManager.Contact) s.object).numbers) {
+                            s.frecency = Math.max(s.frecency, FrecencyManager.score(FrecencyManager.CONTACT, number));
+                        }
+                    }
+                    break;
+            }
+        }
+    }
+
+    private Command parse(MainPack info, String before) {
+        int appsVersion = info.appsManager.getAppLabelsVersion();
+
+        if(before.equals(parsedBefore) && info.currentDirectory.equals(parsedDirectory) && info.isSu() == parsedSu &&
+                appsVersion == parsedAppsVersion) {
+            return parsedCommand;
+        }
+
+        Command cmd = null;
+        try {
+            cmd = CommandTuils.parse(before, info, true);
+        } catch (Exception e) {}
+
+        parsedBefore = before;
+        parsedDirectory = info.currentDirectory;
+        parsedSu = info.isSu();
+        parsedAppsVersion = appsVersion;
+        parsedCommand = cmd;
+
+        return cmd;
+    }
+
+//    returns the suggestions of the requested page, ranking only the first (page + 1) * limit ones
+    private Suggestion[] page(List<Suggestion> suggestions, boolean rank, int page) {
+        int size = suggestions.size();
+
+        if(limit <= 0) {
+            if(rank) Collections.sort(suggestions);
+            return suggestions.toArray(new Suggestion[size]);
+        }
+
+        int from = Math.min(page * limit, size);
+        int to = Math.min(from + limit, size);
+
+        Suggestion[] top = rank ? top(suggestions, to) : suggestions.subList(0, to).toArray(new Suggestion[to]);
+
+        boolean more = showMore && to < size;
+
+        Suggestion[] array = new Suggestion[to - from + (more ? 1 : 0)];
+        System.arraycopy(top, from, array, 0, to - from);
+        if(more) array[array.length - 1] = new Suggestion(null, MORE_TEXT, false, NO_RATE, Suggestion.TYPE_MORE, page + 1);
+
+        return array;
+    }
+
+//    the best k suggestions, sorted. Equal rates keep their original order, as Collections.sort would do
+    private Suggestion[] top(final List<Suggestion> suggestions, int k) {
+        Suggestion[] array = new Suggestion[k];
+        if(k == 0) return array;
+
+//        the root is the worst of the best k seen so far
+        PriorityQueue<Integer> heap = new PriorityQueue<>(k, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                int c = suggestions.get(o2).compareTo(suggestions.get(o1));
+                return c != 0 ? c : o2 - o1;
+            }
+        });
+
+        for(int count = 0; count < suggestions.size(); count++) {
+            if(heap.size() < k) heap.add(count);
+            else {
+                int worst = heap.peek();
+                int c = suggestions.get(count).compareTo(suggestions.get(worst));
+                if(c < 0) {
+                    heap.poll();
+                    heap.add(count);
+                }
             }
         }
 
-        Collections.sort(suggestionList);
-        Suggestion[] array = new Suggestion[suggestionList.size()];
-        return suggestionList.toArray(array);
+        for(int count = k - 1; count >= 0; count--) array[count] = suggestions.get(heap.poll());
+        return array;
     }
 
     private void suggestPermanentSuggestions(List<Suggestion> suggestions, PermanentSuggestionCommand cmd) {
@@ -168,7 +419,17 @@ public class SuggestionsManager {
 
     private void suggestAlias(AliasManager aliasManager, List<Suggestion> suggestions, String lastWord) {
         if(lastWord.length() == 0) for(String s : aliasManager.getAliases()) suggestions.add(new Suggestion(Tuils.EMPTYSTRING, s, true, NO_RATE, Suggestion.TYPE_ALIAS));
-        else for(String s : aliasManager.getAliases()) if(s.startsWith(lastWord)) suggestions.add(new Suggestion(Tuils.EMPTYSTRING, s, true, NO_RATE, Suggestion.TYPE_ALIAS));
+        else {
+            int version = aliasManager.getAliasesVersion();
+
+            List<String> aliases = aliasesCache.narrow(lastWord, aliasManager, version);
+            if(aliases == null) {
+                aliases = aliasManager.getAliases(lastWord);
+                aliasesCache.put(lastWord, aliasManager, version, aliases, aliases);
+            }
+
+            for(String s : aliases) suggestions.add(new Suggestion(Tuils.EMPTYSTRING, s, true, NO_RATE, Suggestion.TYPE_ALIAS));
+        }
     }
 
     private void suggestParams(MainPack pack, List<Suggestion> suggestions, ParamCommand cmd, String before, String lastWord) {
@@ -286,16 +547,15 @@ public class SuggestionsManager {
             return;
         }
 
-        String[] files = dir.list();
+        List<FuzzyMatcher.Candidate> files = DirCache.candidates(dir);
         if(files == null) {
             return;
         }
-        Arrays.sort(files);
-        List<Compare.CompareInfo> infos = Compare.compareInfo(files, prev, min_file_rate,
+        List<FuzzyMatcher.Match> matches = FuzzyMatcher.match(files, prev, min_file_rate,
                 FileManager.USE_SCROLL_COMPARE);
 
-        for(Compare.CompareInfo i : infos) {
-            suggestions.add(new Suggestion(before, i.s, false, i.rate, Suggestion.TYPE_FILE));
+        for(FuzzyMatcher.Match m : matches) {
+            suggestions.add(new Suggestion(before, m.candidate.label, false, m.rate, Suggestion.TYPE_FILE));
         }
     }
 
@@ -305,11 +565,10 @@ public class SuggestionsManager {
         }
 
         try {
-            String[] files = dir.list();
+            String[] files = DirCache.list(dir);
             if(files == null) {
                 return;
             }
-            Arrays.sort(files);
             for (String s : files) {
                 suggestions.add(new Suggestion(before, s, false, NO_RATE, Suggestion.TYPE_FILE));
             }
@@ -323,20 +582,34 @@ public class SuggestionsManager {
         }
 
         else if(prev.length() <= FIRST_INTERVAL) {
-            prev = prev.trim().toLowerCase();
+            List<ContactManager.Contact> all = info.contacts.getContacts();
+
+            List<ContactManager.Contact> contacts = contactsCache.narrow(prev, all, 0);
+            if(contacts == null) {
+                String normalizedPrev = Compare.normalize(prev);
+
+                contacts = new ArrayList<>();
+                List<String> names = new ArrayList<>();
+                for (ContactManager.Contact contact : all)
+                    if(contact.normalizedName.startsWith(normalizedPrev)) {
+                        contacts.add(contact);
+                        names.add(contact.normalizedName);
+                    }
 
-            for (ContactManager.Contact contact : info.contacts.getContacts())
-                if(contact.name.toLowerCase().trim().startsWith(prev)) {
-                    suggestions.add(new Suggestion(before, contact.name, true, NO_RATE, Suggestion.TYPE_CONTACT, contact));
-                }
+                contactsCache.putKeys(prev, all, 0, contacts, names);
+            }
+
+            for(ContactManager.Contact contact : contacts) {
+                suggestions.add(new Suggestion(before, contact.name, true, NO_RATE, Suggestion.TYPE_CONTACT, contact));
+            }
         }
 
         else {
-            for(ContactManager.Contact contact : info.contacts.getContacts()) {
-                int rate = ContactManager.USE_SCROLL_COMPARE ? Compare.scrollComparison(contact.name, prev) : Compare.linearComparison(contact.name, prev);
-                if(rate >= min_contacts_rate) {
-                    suggestions.add(new Suggestion(before, contact.name, true, NO_RATE, Suggestion.TYPE_CONTACT, contact));
-                }
+            List<FuzzyMatcher.Match> matches = FuzzyMatcher.match(info.contacts.getCandidates(), prev, min_contacts_rate,
+                    ContactManager.USE_SCROLL_COMPARE);
+            for(FuzzyMatcher.Match m : matches) {
+                ContactManager.Contact contact = (ContactManager.Contact) m.candidate.tag;
+                suggestions.add(new Suggestion(before, contact.name, true, NO_RATE, Suggestion.TYPE_CONTACT, contact));
             }
         }
     }
@@ -346,18 +619,23 @@ public class SuggestionsManager {
             for (String s : info.player.getNames())
                 suggestions.add(new Suggestion(before, s, true, NO_RATE, Suggestion.TYPE_SONG));
         } else if(prev.length() <= FIRST_INTERVAL) {
-            prev = prev.trim().toLowerCase();
-            List<String> names = info.player.getNames();
+            int version = info.player.getNamesVersion();
+
+            List<String> names = songsCache.narrow(prev, info.player, version);
+            if(names == null) {
+                List<String> keys = new ArrayList<>();
+                names = info.player.getNames(prev, keys);
+                songsCache.putKeys(prev, info.player, version, names, keys);
+            }
+
             for (String n : names) {
-                if(n.toLowerCase().trim().startsWith(prev)) {
-                    suggestions.add(new Suggestion(before, n, true, MAX_RATE, Suggestion.TYPE_SONG));
-                }
+                suggestions.add(new Suggestion(before, n, true, MAX_RATE, Suggestion.TYPE_SONG));
             }
         } else {
-            List<Compare.CompareInfo> infos = Compare.compareInfo(info.player.getNames(), prev, min_songs_rate,
+            List<FuzzyMatcher.Match> matches = FuzzyMatcher.match(info.player.getCandidates(), prev, min_songs_rate,
                     MusicManager.USE_SCROLL_COMPARE);
-            for(Compare.CompareInfo i : infos) {
-                suggestions.add(new Suggestion(before, i.s, true, i.rate, Suggestion.TYPE_SONG));
+            for(FuzzyMatcher.Match m : matches) {
+                suggestions.add(new Suggestion(before, m.candidate.label, true, m.rate, Suggestion.TYPE_SONG));
             }
         }
     }
@@ -370,24 +648,28 @@ public class SuggestionsManager {
 
         if(prev.length() <= FIRST_INTERVAL) {
             prev = prev.toLowerCase().trim();
-            String[] cmds = info.commandGroup.getCommandNames();
-            for (String s : cmds) {
-                if(s.startsWith(prev)) {
-                    CommandAbstraction cmd = info.commandGroup.getCommandByName(s);
-                    int[] args = cmd.argType();
-                    boolean exec = args == null || args.length == 0;
-                    suggestions.add(new Suggestion(before, s, exec, MAX_RATE, Suggestion.TYPE_COMMAND));
-                }
+
+            List<String> names = commandsCache.narrow(prev, info.commandGroup, 0);
+            if(names == null) {
+                names = info.commandGroup.getCommandNames(prev);
+                commandsCache.put(prev, info.commandGroup, 0, names, names);
+            }
+
+            for (String s : names) {
+                CommandAbstraction cmd = info.commandGroup.getCommandByName(s);
+                int[] args = cmd.argType();
+                boolean exec = args == null || args.length == 0;
+                suggestions.add(new Suggestion(before, s, exec, MAX_RATE, Suggestion.TYPE_COMMAND));
             }
             return;
         }
 
-        List<Compare.CompareInfo> infos = Compare.compareInfo(info.commandGroup.getCommandNames(), prev, min_command_rate, false);
-        for(Compare.CompareInfo i : infos) {
-            CommandAbstraction cmd = info.commandGroup.getCommandByName(i.s);
+        List<FuzzyMatcher.Match> matches = FuzzyMatcher.match(info.commandGroup.getCandidates(), prev, min_command_rate, false);
+        for(FuzzyMatcher.Match m : matches) {
+            CommandAbstraction cmd = info.commandGroup.getCommandByName(m.candidate.label);
             int[] args = cmd.argType();
             boolean exec = args == null || args.length == 0;
-            suggestions.add(new Suggestion(before, i.s, exec, i.rate, Suggestion.TYPE_COMMAND));
+            suggestions.add(new Suggestion(before, m.candidate.label, exec, m.rate, Suggestion.TYPE_COMMAND));
         }
     }
 
@@ -409,27 +691,36 @@ public class SuggestionsManager {
     }
 
     private void suggestApp(MainPack info, List<Suggestion> suggestions, String prev, String before) {
-        List<String> names = info.appsManager.getAppLabels();
         if (prev == null || prev.length() == 0) {
-            for (String s : names) {
+            for (String s : info.appsManager.getAppLabels()) {
                 suggestions.add(new Suggestion(before, s, true, NO_RATE, Suggestion.TYPE_APP));
             }
         } else if(prev.length() <= FIRST_INTERVAL) {
-            prev = prev.trim().toLowerCase();
-            for (String n : names) {
-                if(n.toLowerCase().trim().startsWith(prev)) {
-                    suggestions.add(new Suggestion(before, n, true, MAX_RATE, Suggestion.TYPE_APP));
-                }
+            for (String n : appLabels(info.appsManager, prev)) {
+                suggestions.add(new Suggestion(before, n, true, MAX_RATE, Suggestion.TYPE_APP));
             }
         } else {
-            List<Compare.CompareInfo> infos = Compare.compareInfo(names, prev, min_apps_rate,
+            List<FuzzyMatcher.Match> matches = FuzzyMatcher.match(info.appsManager.getAppCandidates(), prev, min_apps_rate,
                     AppsManager.USE_SCROLL_COMPARE);
-            for(Compare.CompareInfo i : infos) {
-                suggestions.add(new Suggestion(before, i.s, true, i.rate, Suggestion.TYPE_APP));
+            for(FuzzyMatcher.Match m : matches) {
+                suggestions.add(new Suggestion(before, m.candidate.label, true, m.rate, Suggestion.TYPE_APP));
             }
         }
     }
 
+    private List<String> appLabels(AppsManager appsManager, String prev) {
+        int version = appsManager.getAppLabelsVersion();
+
+        List<String> labels = appsCache.narrow(prev, appsManager, version);
+        if(labels == null) {
+            List<String> keys = new ArrayList<>();
+            labels = appsManager.getAppLabels(prev, keys);
+            appsCache.putKeys(prev, appsManager, version, labels, keys);
+        }
+
+        return labels;
+    }
+
     private void suggestHiddenApp(MainPack info, List<Suggestion> suggestions, String prev, String before) {
         List<String> names = info.appsManager.getHiddenAppsLabels();
         if (prev == null || prev.length() == 0) {
@@ -444,10 +735,10 @@ public class SuggestionsManager {
                 }
             }
         } else {
-            List<Compare.CompareInfo> infos = Compare.compareInfo(names, prev, min_apps_rate,
+            List<FuzzyMatcher.Match> matches = FuzzyMatcher.match(info.appsManager.getHiddenAppCandidates(), prev, min_apps_rate,
                     AppsManager.USE_SCROLL_COMPARE);
-            for(Compare.CompareInfo i : infos) {
-                suggestions.add(new Suggestion(before, i.s, true, i.rate, Suggestion.TYPE_APP));
+            for(FuzzyMatcher.Match m : matches) {
+                suggestions.add(new Suggestion(before, m.candidate.label, true, m.rate, Suggestion.TYPE_APP));
             }
         }
     }
@@ -456,23 +747,19 @@ public class SuggestionsManager {
         suggestions.add(new Suggestion(before, "most_used", false, MAX_RATE, Suggestion.TYPE_PERMANENT));
         suggestions.add(new Suggestion(before, "null", false, MAX_RATE, Suggestion.TYPE_PERMANENT));
 
-        List<String> names = info.appsManager.getAppLabels();
         if (prev == null || prev.length() == 0) {
-            for (String s : names) {
+            for (String s : info.appsManager.getAppLabels()) {
                 suggestions.add(new Suggestion(before, s, true, NO_RATE, Suggestion.TYPE_APP));
             }
         } else if(prev.length() <= FIRST_INTERVAL) {
-            prev = prev.trim().toLowerCase();
-            for (String n : names) {
-                if(n.toLowerCase().trim().startsWith(prev)) {
-                    suggestions.add(new Suggestion(before, n, true, MAX_RATE, Suggestion.TYPE_APP));
-                }
+            for (String n : appLabels(info.appsManager, prev)) {
+                suggestions.add(new Suggestion(before, n, true, MAX_RATE, Suggestion.TYPE_APP));
             }
         } else {
-            List<Compare.CompareInfo> infos = Compare.compareInfo(names, prev, min_apps_rate,
+            List<FuzzyMatcher.Match> matches = FuzzyMatcher.match(info.appsManager.getAppCandidates(), prev, min_apps_rate,
                     AppsManager.USE_SCROLL_COMPARE);
-            for(Compare.CompareInfo i : infos) {
-                suggestions.add(new Suggestion(before, i.s, true, i.rate, Suggestion.TYPE_APP));
+            for(FuzzyMatcher.Match m : matches) {
+                suggestions.add(new Suggestion(before, m.candidate.label, true, m.rate, Suggestion.TYPE_APP));
             }
         }
     }
@@ -539,6 +826,7 @@ public class SuggestionsManager {
         public static final int TYPE_BOOLEAN = 16;
         public static final int TYPE_COLOR = 17;
         public static final int TYPE_PERMANENT = 18;
+        public static final int TYPE_MORE = 19;
 
         public String text;
         public String textBefore;
@@ -547,6 +835,8 @@ public class SuggestionsManager {
         public int rate;
         public int type;
 
+        public double frecency = FrecencyManager.NO_SCORE;
+
         public Object object;
 
         public Suggestion(String before, String text, boolean exec, int rate, int type) {
@@ -586,7 +876,8 @@ public class SuggestionsManager {
 
         @Override
         public int compareTo(Suggestion another) {
-            return this.rate > another.rate? -1 : (this.rate == another.rate ? 0 : 1);
+            if(this.rate != another.rate) return this.rate > another.rate ? -1 : 1;
+            return Double.compare(another.frecency, this.frecency);
         }
 
         @Override
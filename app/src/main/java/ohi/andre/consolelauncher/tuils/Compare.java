@@ -14,21 +14,29 @@ public class Compare {
 
     static final char[] allowed_separators = {' ', '-', '_'};
 
-    private static final String ACCENTS_PATTERN = "\\p{InCombiningDiacriticalMarks}+";
+    private static final Pattern ACCENTS_PATTERN = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
     public static String removeAccents(String s) {
         if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.GINGERBREAD) {
-            Pattern pattern = Pattern.compile(ACCENTS_PATTERN);
             String decomposed = Normalizer.normalize(s, Normalizer.Form.NFD);
-            return pattern.matcher(decomposed).replaceAll(Tuils.EMPTYSTRING);
+            return ACCENTS_PATTERN.matcher(decomposed).replaceAll(Tuils.EMPTYSTRING);
         }
 
         return s;
     }
 
+//    the folded form of a label (trimmed, without accents, lower case). It should be computed once, when the label is loaded,
+//    and stored next to it
+    public static String normalize(String s) {
+        if(s == null) return null;
+        return removeAccents(s.trim()).toLowerCase();
+    }
+
     public static boolean matches(String compared, String comparator, boolean allowSkip, int minRate) {
-        compared = removeAccents(compared);
-        comparator = removeAccents(comparator);
+        return matchesNormalized(removeAccents(compared), removeAccents(comparator), allowSkip, minRate);
+    }
 
+//    compared and comparator must be already normalized
+    public static boolean matchesNormalized(String compared, String comparator, boolean allowSkip, int minRate) {
         List<String> s = new ArrayList<>();
         if(allowSkip) {
             for(char sep : allowed_separators) {
@@ -56,8 +64,9 @@ public class Compare {
     public static List<String> matches(List<String> compared, String comparator, boolean allowSkip, int minRate) {
         List<String> ms = new ArrayList<>();
 
+        comparator = removeAccents(comparator);
         for(String s : compared) {
-            if(matches(s, comparator, allowSkip, minRate)) {
+            if(matchesNormalized(removeAccents(s), comparator, allowSkip, minRate)) {
                 ms.add(s);
             }
         }
@@ -0,0 +1,241 @@
+package ohi.andre.consolelauncher.tuils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fuzzy matching of what the user typed against a list of labels.
+ *
+ * The rate of a label is the number of chars of the input found at the same position of the label (linear), or the
+ * highest of these numbers sliding the input along the label (scroll). Labels are compared by their normalized form.
+ *
+ * Each Candidate keeps a bit mask for each of its chars (bit i is set if the char is at position i), so the rate is
+ * computed with a few word operations for each char of the input: for scroll comparison the shifted masks are summed
+ * in bit-sliced counters (one counter for each shift) and the highest counter is extracted plane by plane.
+ * Labels longer than 64 chars fall back to the plain char by char comparison
+ */
+
+public class FuzzyMatcher {
+
+    private static final int WORD = 64;
+//    counters can hold up to 2^PLANES - 1
+    private static final int PLANES = 7;
+
+    public static class Candidate {
+
+        public final String label;
+        public final Object tag;
+
+        final String key;
+
+        private char[] chars;
+        private long[] masks;
+
+        public Candidate(String label) {
+            this(label, null);
+        }
+
+        public Candidate(String label, Object tag) {
+            this.label = label;
+            this.tag = tag;
+            this.key = Compare.normalize(label);
+
+            if(key.length() <= WORD) {
+                char[] sorted = key.toCharArray();
+                Arrays.sort(sorted);
+
+                int distinct = 0;
+                for(int count = 0; count < sorted.length; count++) {
+                    if(count == 0 || sorted[count] != sorted[count - 1]) sorted[distinct++] = sorted[count];
+                }
+
+//                Arrays.copyOf needs API 9
+                chars = new char[distinct];
+                System.arraycopy(sorted, 0, chars, 0, distinct);
+                masks = new long[distinct];
+                for(int count = 0; count < key.length(); count++) {
+                    masks[Arrays.binarySearch(chars, key.charAt(count))] |= 1L << count;
+                }
+            }
+        }
+    }
+
+    public static class Query {
+
+        final String key;
+
+//        distinct chars of the key (sorted), and for each position the index of its char in there
+        final char[] chars;
+        final int[] indexes;
+
+//        reused by each rate computation, so a Query must not be shared by threads
+        final long[] queryMasks;
+        final long[] planes = new long[PLANES];
+
+        public Query(String typed) {
+            this.key = Compare.normalize(typed);
+
+            char[] sorted = key.toCharArray();
+            Arrays.sort(sorted);
+
+            int n = 0;
+            for(int count = 0; count < sorted.length; count++) {
+                if(count == 0 || sorted[count] != sorted[count - 1]) sorted[n++] = sorted[count];
+            }
+            chars = new char[n];
+            System.arraycopy(sorted, 0, chars, 0, n);
+
+            indexes = new int[key.length()];
+            for(int count = 0; count < key.length(); count++) indexes[count] = Arrays.binarySearch(chars, key.charAt(count));
+
+            queryMasks = new long[n];
+        }
+    }
+
+    public static class Match {
+
+        public final Candidate candidate;
+        public final int rate;
+
+        Match(Candidate candidate, int rate) {
+            this.candidate = candidate;
+            this.rate = rate;
+        }
+    }
+
+    public static List<Candidate> candidates(List<String> labels) {
+        List<Candidate> candidates = new ArrayList<>(labels.size());
+        for(String s : labels) candidates.add(new Candidate(s));
+        return candidates;
+    }
+
+    public static List<Candidate> candidates(String[] labels) {
+        return candidates(Arrays.asList(labels));
+    }
+
+    public static int rate(Candidate candidate, Query query, boolean scroll) {
+        return rate(candidate, query, scroll, 0);
+    }
+
+//    returns -1 as soon as it's clear that the rate is lower than minRate
+    private static int rate(Candidate candidate, Query query, boolean scroll, int minRate) {
+//        linear needs at most one compare for each char of the input, merging the masks would cost more
+        if(!scroll || candidate.masks == null || query.key.length() >= (1 << PLANES)) {
+            int rate = scalarRate(candidate.key, query.key, scroll);
+            return rate >= minRate ? rate : -1;
+        }
+
+        int m = query.key.length();
+
+//        both the char arrays are sorted, so the masks are found merging them
+        long[] queryMasks = query.queryMasks;
+        char[] qChars = query.chars, cChars = candidate.chars;
+        for(int q = 0, c = 0; q < qChars.length; q++) {
+            while(c < cChars.length && cChars[c] < qChars[q]) c++;
+            queryMasks[q] = c < cChars.length && cChars[c] == qChars[q] ? candidate.masks[c] : 0;
+        }
+
+//        the rate can't be higher than the number of chars of the input found somewhere in the label
+        if(minRate > 0) {
+            int found = 0;
+            for(int count = 0; count < m && count < WORD; count++) {
+                if(queryMasks[query.indexes[count]] != 0) found++;
+            }
+            if(found < minRate) return -1;
+        }
+
+//        bit s of planes[p] is bit p of the number of chars which match when the input is shifted by s
+        long[] planes = query.planes;
+        Arrays.fill(planes, 0);
+        int used = 0;
+
+        for(int count = 0; count < m && count < WORD; count++) {
+            long carry = queryMasks[query.indexes[count]] >>> count;
+
+            for(int p = 0; carry != 0; p++) {
+                long t = planes[p] & carry;
+                planes[p] ^= carry;
+                carry = t;
+
+                if(p >= used) used = p + 1;
+            }
+        }
+
+        long shifts = -1L;
+        int rate = 0;
+        for(int p = used - 1; p >= 0; p--) {
+            long t = shifts & planes[p];
+            if(t != 0) {
+                shifts = t;
+                rate |= 1 << p;
+            }
+        }
+
+        return rate >= minRate ? rate : -1;
+    }
+
+//    the reference implementation, char by char. key and query must be already normalized
+    static int scalarRate(String key, String query, boolean scroll) {
+        int best = 0;
+
+        int lastShift = scroll ? key.length() - 1 : 0;
+        for(int shift = 0; shift <= lastShift; shift++) {
+            int rate = 0;
+            for(int count = 0; count < query.length() && count + shift < key.length(); count++) {
+                if(key.charAt(count + shift) == query.charAt(count)) rate++;
+            }
+
+            if(rate > best) best = rate;
+        }
+
+        return best;
+    }
+
+//    for labels which are compared only once, building their masks wouldn't pay off
+    public static int rate(String label, Query query, boolean scroll) {
+        return scalarRate(Compare.normalize(label), query.key, scroll);
+    }
+
+//    the candidates whose rate is at least minRate, best first
+    public static List<Match> match(List<Candidate> candidates, String typed, int minRate, boolean scroll) {
+        Query query = new Query(typed);
+
+        List<Match> matches = new ArrayList<>();
+        int maxRate = 0;
+        for(Candidate c : candidates) {
+            int rate = rate(c, query, scroll, minRate);
+            if(rate >= 0 && rate >= minRate) {
+                matches.add(new Match(c, rate));
+                if(rate > maxRate) maxRate = rate;
+            }
+        }
+
+//        rates are small, so they're sorted by counting. Matches with the same rate keep their order
+        int[] starts = new int[maxRate + 2];
+        for(Match m : matches) starts[maxRate - m.rate + 1]++;
+        for(int count = 1; count < starts.length; count++) starts[count] += starts[count - 1];
+
+        Match[] sorted = new Match[matches.size()];
+        for(Match m : matches) sorted[starts[maxRate - m.rate]++] = m;
+
+        return Arrays.asList(sorted);
+    }
+
+//    the best candidate (the first one if more have the same rate), null if none reaches minRate
+    public static Candidate best(List<Candidate> candidates, String typed, int minRate, boolean scroll) {
+        Query query = new Query(typed);
+
+        Candidate best = null;
+        int bestRate = minRate - 1;
+        for(Candidate c : candidates) {
+            int rate = rate(c, query, scroll, Math.max(minRate, bestRate + 1));
+            if(rate > bestRate) {
+                best = c;
+                bestRate = rate;
+            }
+        }
+
+        return best;
+    }
+}
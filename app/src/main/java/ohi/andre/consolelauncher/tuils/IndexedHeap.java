@@ -0,0 +1,131 @@
+package ohi.andre.consolelauncher.tuils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A binary min heap which knows where each of its values is, so a value whose key changed can be moved to its
+ * place (update) or removed in O(log n). Values must have consistent equals/hashCode and appear at most once
+ */
+
+public class IndexedHeap<T> {
+
+    private List<T> heap = new ArrayList<>();
+    private Map<T, Integer> positions = new HashMap<>();
+    private Comparator<? super T> comparator;
+
+    public IndexedHeap(Comparator<? super T> comparator) {
+        this.comparator = comparator;
+    }
+
+    public int size() {
+        return heap.size();
+    }
+
+    public boolean contains(T value) {
+        return positions.containsKey(value);
+    }
+
+    public T peek() {
+        return heap.size() > 0 ? heap.get(0) : null;
+    }
+
+    public void add(T value) {
+        if(positions.containsKey(value)) {
+            update(value);
+            return;
+        }
+
+        heap.add(value);
+        positions.put(value, heap.size() - 1);
+        up(heap.size() - 1);
+    }
+
+    public T poll() {
+        if(heap.size() == 0) return null;
+
+        T min = heap.get(0);
+        removeAt(0);
+        return min;
+    }
+
+    public boolean remove(T value) {
+        Integer index = positions.get(value);
+        if(index == null) return false;
+
+        removeAt(index);
+        return true;
+    }
+
+//    to be called after the key of value changed
+    public void update(T value) {
+        Integer index = positions.get(value);
+        if(index == null) return;
+
+        if(!up(index)) down(index);
+    }
+
+    public void clear() {
+        heap.clear();
+        positions.clear();
+    }
+
+//    in heap order, not sorted
+    public List<T> values() {
+        return new ArrayList<>(heap);
+    }
+
+    private void removeAt(int index) {
+        int last = heap.size() - 1;
+        T removed = heap.get(index);
+
+        if(index != last) {
+            set(index, heap.get(last));
+        }
+        heap.remove(last);
+        positions.remove(removed);
+
+        if(index < heap.size() && !up(index)) down(index);
+    }
+
+    private boolean up(int index) {
+        boolean moved = false;
+        while(index > 0) {
+            int parent = (index - 1) / 2;
+            if(comparator.compare(heap.get(index), heap.get(parent)) >= 0) break;
+
+            swap(index, parent);
+            index = parent;
+            moved = true;
+        }
+        return moved;
+    }
+
+    private void down(int index) {
+        int size = heap.size();
+        while(true) {
+            int left = index * 2 + 1, right = left + 1, min = index;
+
+            if(left < size && comparator.compare(heap.get(left), heap.get(min)) < 0) min = left;
+            if(right < size && comparator.compare(heap.get(right), heap.get(min)) < 0) min = right;
+            if(min == index) return;
+
+            swap(index, min);
+            index = min;
+        }
+    }
+
+    private void swap(int a, int b) {
+        T t = heap.get(a);
+        set(a, heap.get(b));
+        set(b, t);
+    }
+
+    private void set(int index, T value) {
+        heap.set(index, value);
+        positions.put(value, index);
+    }
+}
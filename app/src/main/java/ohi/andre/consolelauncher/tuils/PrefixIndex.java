@@ -0,0 +1,203 @@
+package ohi.andre.consolelauncher.tuils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A character trie which maps labels to values. It's meant to be kept up to date by the owner of the
+ * labels (apps, aliases, songs, commands), so that looking for the values whose label starts with a prefix
+ * costs O(prefix length + results) instead of a full scan. If normalize is true labels are indexed by their
+ * normalized form (see Compare.normalize), computed once when they're added
+ */
+
+public class PrefixIndex<T> {
+
+    private static final char[] NO_CHARS = new char[0];
+
+    private final boolean normalize;
+
+    private Node<T> root;
+    private int size, version;
+
+    public PrefixIndex(boolean normalize) {
+        this.normalize = normalize;
+        this.root = new Node<>();
+    }
+
+    public synchronized void add(String label, T value) {
+        if(label == null) return;
+
+        String key = key(label);
+
+        Node<T> node = root;
+        for(int count = 0; count < key.length(); count++) {
+            node = node.getOrCreate(key.charAt(count));
+        }
+
+        if(node.values == null) {
+            node.values = new ArrayList<>(1);
+            node.key = key;
+        }
+        node.values.add(value);
+
+        size++;
+        version++;
+    }
+
+    public synchronized boolean remove(String label, T value) {
+        if(label == null) return false;
+
+        String key = key(label);
+
+        Node<T>[] path = new Node[key.length() + 1];
+        path[0] = root;
+
+        Node<T> node = root;
+        for(int count = 0; count < key.length(); count++) {
+            node = node.get(key.charAt(count));
+            if(node == null) return false;
+
+            path[count + 1] = node;
+        }
+
+        if(node.values == null || !node.values.remove(value)) return false;
+        if(node.values.size() == 0) {
+            node.values = null;
+            node.key = null;
+        }
+
+//        prune the branches which don't lead to any value anymore
+        for(int count = key.length(); count > 0; count--) {
+            if(!path[count].isEmpty()) break;
+            path[count - 1].remove(key.charAt(count - 1));
+        }
+
+        size--;
+        version++;
+        return true;
+    }
+
+    public synchronized void clear() {
+        root = new Node<>();
+        size = 0;
+        version++;
+    }
+
+//    values are returned following the order of their labels
+    public List<T> prefixed(String prefix) {
+        return prefixed(prefix, null);
+    }
+
+//    if keys isn't null, the indexed (normalized) label of each value is added to it
+    public synchronized List<T> prefixed(String prefix, List<String> keys) {
+        List<T> result = new ArrayList<>();
+
+        String key = key(prefix);
+
+        Node<T> node = root;
+        for(int count = 0; count < key.length() && node != null; count++) {
+            node = node.get(key.charAt(count));
+        }
+
+        if(node != null) node.collect(result, keys);
+        return result;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+//    changes every time the content of the index changes
+    public synchronized int version() {
+        return version;
+    }
+
+    private String key(String label) {
+        return normalize ? Compare.normalize(label) : label.trim();
+    }
+
+    private static class Node<T> {
+
+        char[] chars = NO_CHARS;
+        Node<T>[] children;
+
+        List<T> values;
+        String key;
+
+        Node<T> get(char c) {
+            int index = indexOf(c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node<T> getOrCreate(char c) {
+            int index = indexOf(c);
+            if(index >= 0) return children[index];
+
+            index = -(index + 1);
+
+            char[] newChars = new char[chars.length + 1];
+            Node<T>[] newChildren = new Node[chars.length + 1];
+
+            System.arraycopy(chars, 0, newChars, 0, index);
+            System.arraycopy(chars, index, newChars, index + 1, chars.length - index);
+            if(children != null) {
+                System.arraycopy(children, 0, newChildren, 0, index);
+                System.arraycopy(children, index, newChildren, index + 1, chars.length - index);
+            }
+
+            Node<T> node = new Node<>();
+            newChars[index] = c;
+            newChildren[index] = node;
+
+            chars = newChars;
+            children = newChildren;
+
+            return node;
+        }
+
+        void remove(char c) {
+            int index = indexOf(c);
+            if(index < 0) return;
+
+            if(chars.length == 1) {
+                chars = NO_CHARS;
+                children = null;
+                return;
+            }
+
+            char[] newChars = new char[chars.length - 1];
+            Node<T>[] newChildren = new Node[chars.length - 1];
+
+            System.arraycopy(chars, 0, newChars, 0, index);
+            System.arraycopy(chars, index + 1, newChars, index, chars.length - index - 1);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(children, index + 1, newChildren, index, chars.length - index - 1);
+
+            chars = newChars;
+            children = newChildren;
+        }
+
+        boolean isEmpty() {
+            return values == null && chars.length == 0;
+        }
+
+        void collect(List<T> result, List<String> keys) {
+            if(values != null) {
+                result.addAll(values);
+                if(keys != null) for(int count = 0; count < values.size(); count++) keys.add(key);
+            }
+            for(int count = 0; count < chars.length; count++) children[count].collect(result, keys);
+        }
+
+        private int indexOf(char c) {
+            int low = 0, high = chars.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if(chars[mid] < c) low = mid + 1;
+                else if(chars[mid] > c) high = mid - 1;
+                else return mid;
+            }
+            return -(low + 1);
+        }
+    }
+}
@@ -43,11 +43,9 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Enumeration;
 import java.util.List;
 import java.util.regex.Pattern;
 
-import dalvik.system.DexFile;
 import ohi.andre.consolelauncher.BuildConfig;
 import ohi.andre.consolelauncher.managers.music.MusicManager;
 import ohi.andre.consolelauncher.managers.SkinManager;
@@ -302,20 +300,6 @@ public class Tuils {
         return bd.doubleValue();
     }
 
-    public static List<String> getClassesInPackage(String packageName, Context c) throws IOException {
-        List<String> classes = new ArrayList<>();
-        String packageCodePath = c.getPackageCodePath();
-        DexFile df = new DexFile(packageCodePath);
-        for (Enumeration<String> iter = df.entries(); iter.hasMoreElements(); ) {
-            String className = iter.nextElement();
-            if (className.contains(packageName) && !className.contains("$")) {
-                classes.add(className.substring(className.lastIndexOf(".") + 1, className.length()));
-            }
-        }
-
-        return classes;
-    }
-
     public static String[] toString(Enum[] enums) {
         String[] arr = new String[enums.length];
         for(int count = 0; count < enums.length; count++) arr[count] = enums[count].name();
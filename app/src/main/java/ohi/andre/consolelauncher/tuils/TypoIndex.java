@@ -0,0 +1,216 @@
+package ohi.andre.consolelauncher.tuils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A BK-tree over normalized labels, used to resolve names typed with a few typos ("whtasapp" -> "whatsapp").
+ *
+ * The tree is built on the Levenshtein distance, which is a metric. Typos are measured with the optimal string
+ * alignment distance (Levenshtein + transpositions of adjacent chars): since it's never lower than half the
+ * Levenshtein distance, the tree is searched with twice the radius and the results are checked again
+ */
+
+public class TypoIndex<T> {
+
+    private Node<T> root;
+    private int size;
+
+    public synchronized void add(String label, T value) {
+        if(label == null) return;
+
+        String key = Compare.normalize(label);
+        if(key.length() == 0) return;
+
+        size++;
+
+        if(root == null) {
+            root = new Node<>(key, value);
+            return;
+        }
+
+        Node<T> node = root;
+        while(true) {
+            int d = levenshtein(node.key, key);
+            if(d == 0) {
+                node.values.add(value);
+                return;
+            }
+
+            Node<T> child = node.child(d);
+            if(child == null) {
+                node.addChild(d, new Node<>(key, value));
+                return;
+            }
+
+            node = child;
+        }
+    }
+
+    public synchronized void clear() {
+        root = null;
+        size = 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+//    the values whose label is at most maxDistance typos away from typed, closest first
+    public synchronized List<T> within(String typed, int maxDistance) {
+        final List<Object[]> found = new ArrayList<>();
+
+        String key = Compare.normalize(typed);
+        if(root != null && key.length() > 0) search(root, key, maxDistance, found);
+
+        Collections.sort(found, new Comparator<Object[]>() {
+            @Override
+            public int compare(Object[] o1, Object[] o2) {
+                return (Integer) o1[0] - (Integer) o2[0];
+            }
+        });
+
+        List<T> result = new ArrayList<>(found.size());
+        for(Object[] o : found) result.add((T) o[1]);
+        return result;
+    }
+
+//    the value closest to typed, null if there's none within the default distance or if it's not the only one at that distance
+    public synchronized T closest(String typed) {
+        String key = Compare.normalize(typed);
+        int maxDistance = maxDistance(key.length());
+        if(root == null || maxDistance == 0) return null;
+
+        List<Object[]> found = new ArrayList<>();
+        search(root, key, maxDistance, found);
+
+        T best = null;
+        int bestDistance = Integer.MAX_VALUE;
+        boolean ambiguous = false;
+        for(Object[] o : found) {
+            int d = (Integer) o[0];
+            if(d < bestDistance) {
+                bestDistance = d;
+                best = (T) o[1];
+                ambiguous = false;
+            } else if(d == bestDistance) {
+                ambiguous = true;
+            }
+        }
+
+        return ambiguous ? null : best;
+    }
+
+//    short words can't afford typos
+    public static int maxDistance(int length) {
+        if(length < 4) return 0;
+        if(length < 8) return 1;
+        return 2;
+    }
+
+    private void search(Node<T> node, String key, int maxDistance, List<Object[]> found) {
+        int radius = maxDistance * 2;
+
+        List<Node<T>> stack = new ArrayList<>();
+        stack.add(node);
+
+        while(stack.size() > 0) {
+            Node<T> n = stack.remove(stack.size() - 1);
+
+            int d = levenshtein(n.key, key);
+            if(d <= radius) {
+//                osa is lower than d only if there's a transposition, which needs at least 2 edits in Levenshtein
+                int typos = d <= 1 ? d : osa(n.key, key);
+                if(typos <= maxDistance) for(T value : n.values) found.add(new Object[] {typos, value});
+            }
+
+            if(n.distances == null) continue;
+            for(int count = 0; count < n.distances.length; count++) {
+                int cd = n.distances[count];
+                if(cd >= d - radius && cd <= d + radius) stack.add(n.children[count]);
+            }
+        }
+    }
+
+    static int levenshtein(String a, String b) {
+        int[] prev = new int[b.length() + 1];
+        int[] curr = new int[b.length() + 1];
+
+        for(int j = 0; j <= b.length(); j++) prev[j] = j;
+
+        for(int i = 1; i <= a.length(); i++) {
+            curr[0] = i;
+            char ca = a.charAt(i - 1);
+            for(int j = 1; j <= b.length(); j++) {
+                int cost = ca == b.charAt(j - 1) ? 0 : 1;
+                curr[j] = Math.min(Math.min(curr[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+            }
+
+            int[] t = prev;
+            prev = curr;
+            curr = t;
+        }
+
+        return prev[b.length()];
+    }
+
+//    optimal string alignment distance
+    static int osa(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+
+        for(int i = 0; i <= a.length(); i++) d[i][0] = i;
+        for(int j = 0; j <= b.length(); j++) d[0][j] = j;
+
+        for(int i = 1; i <= a.length(); i++) {
+            for(int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + cost);
+
+                if(i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    d[i][j] = Math.min(d[i][j], d[i - 2][j - 2] + 1);
+                }
+            }
+        }
+
+        return d[a.length()][b.length()];
+    }
+
+    private static class Node<T> {
+
+        final String key;
+        final List<T> values = new ArrayList<>(1);
+
+        int[] distances;
+        Node<T>[] children;
+
+        Node(String key, T value) {
+            this.key = key;
+            this.values.add(value);
+        }
+
+        Node<T> child(int distance) {
+            if(distances == null) return null;
+            for(int count = 0; count < distances.length; count++) if(distances[count] == distance) return children[count];
+            return null;
+        }
+
+        void addChild(int distance, Node<T> child) {
+            int n = distances == null ? 0 : distances.length;
+
+            int[] newDistances = new int[n + 1];
+            Node<T>[] newChildren = new Node[n + 1];
+            if(n > 0) {
+                System.arraycopy(distances, 0, newDistances, 0, n);
+                System.arraycopy(children, 0, newChildren, 0, n);
+            }
+
+            newDistances[n] = distance;
+            newChildren[n] = child;
+
+            distances = newDistances;
+            children = newChildren;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package ohi.andre.consolelauncher.commands;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Compares the generated CommandRegistry and the name -> index map of CommandGroup with what they replaced: a
+ * command built by reflection for each class found in the dex file, and a lookup which scanned every command and
+ * checked the end of its class name. The dex scan itself needs a device, so the reflective part only times
+ * Class.forName and the constructor.
+ *
+ * The times are printed, they aren't asserted (they depend on the machine)
+ */
+
+public class CommandGroupBenchmarkTest {
+
+    private static final String PACKAGE = "ohi.andre.consolelauncher.commands.main.raw";
+
+    private static final int WARMUP = 200, ROUNDS = 2000;
+
+    private static CommandAbstraction[] reflectiveCommands(String[] names) throws Exception {
+        List<CommandAbstraction> commands = new ArrayList<>();
+        for(String name : names) {
+            Class<?> clazz = Class.forName(PACKAGE + "." + name);
+            if(CommandAbstraction.class.isAssignableFrom(clazz)) commands.add((CommandAbstraction) clazz.getConstructor().newInstance());
+        }
+        return commands.toArray(new CommandAbstraction[commands.size()]);
+    }
+
+//    CommandGroup.getCommandByName before the map
+    private static CommandAbstraction scan(CommandAbstraction[] commands, String name) {
+        for(CommandAbstraction c : commands) {
+            if(c.getClass().getName().endsWith(".".concat(name))) {
+                return c;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void lookupBenchmark() throws Exception {
+        CommandGroup group = new CommandGroup(null, PACKAGE);
+        String[] names = group.getCommandNames();
+        CommandAbstraction[] commands = reflectiveCommands(names);
+
+        for(String name : names) {
+            CommandAbstraction c = group.getCommandByName(name);
+            assertNotNull(name, c);
+            assertEquals(name, scan(commands, name).getClass(), c.getClass());
+        }
+
+        int found = 0;
+        for(int round = 0; round < WARMUP; round++) {
+            for(String name : names) {
+                if(scan(commands, name) != null) found++;
+                if(group.getCommandByName(name) != null) found++;
+            }
+        }
+
+        long start = System.nanoTime();
+        for(int round = 0; round < ROUNDS; round++) for(String name : names) if(scan(commands, name) != null) found++;
+        long scanTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for(int round = 0; round < ROUNDS; round++) for(String name : names) if(group.getCommandByName(name) != null) found++;
+        long mapTime = System.nanoTime() - start;
+
+        assertEquals(2 * (WARMUP + ROUNDS) * names.length, found);
+
+        long lookups = (long) ROUNDS * names.length;
+        System.out.println("lookup, " + names.length + " commands: scan " + scanTime / lookups + "ns, map " + mapTime / lookups + "ns");
+    }
+
+    @Test
+    public void creationBenchmark() throws Exception {
+        String[] names = CommandRegistry.names(PACKAGE);
+        assertNotNull(names);
+
+        for(int round = 0; round < WARMUP; round++) {
+            reflectiveCommands(names);
+            CommandGroup group = new CommandGroup(null, PACKAGE);
+            for(String name : names) group.getCommandByName(name);
+        }
+
+        long start = System.nanoTime();
+        for(int round = 0; round < ROUNDS; round++) reflectiveCommands(names);
+        long reflectionTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for(int round = 0; round < ROUNDS; round++) {
+            CommandGroup group = new CommandGroup(null, PACKAGE);
+            for(String name : names) group.getCommandByName(name);
+        }
+        long registryTime = System.nanoTime() - start;
+
+        System.out.println("creation of " + names.length + " commands: reflection " + reflectionTime / ROUNDS / 1000 + "us, registry " + registryTime / ROUNDS / 1000 + "us");
+    }
+}
@@ -0,0 +1,129 @@
+package ohi.andre.consolelauncher.managers;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * AppUtils.checkEquality groups the apps by normalized label, it has to rename them exactly as the nested loop it
+ * replaced, which compared every app with all the others
+ *
+ * The times are printed, they aren't asserted (they depend on the machine)
+ */
+
+public class AppUtilsTest {
+
+    private static final String[] LABELS = {"Camera", "camera", "Cam era", "Clock", "CLOCK", "Settings", "Maps", "Maps - Main", "Google Maps", "Phone"};
+    private static final String[] PACKAGES = {"com.android.camera", "com.google.android.apps.maps", "org.telegram", "com.android.settings", "maps"};
+    private static final String[] ACTIVITIES = {"MainActivity", "com.example.CameraActivity", ".Main", "SettingsActivity", "activity.Launcher"};
+
+    private static final int CATALOG = 2000, WARMUP = 3, ROUNDS = 5;
+
+    private final Random random = new Random(42);
+
+//    the old checkEquality
+    private static void nestedLoop(String[] labels, String[] packages, String[] activities) {
+        for (int index = 0; index < labels.length; index++) {
+            if(labels[index] == null) {
+                continue;
+            }
+
+            for (int count = 0; count < labels.length; count++) {
+                if(labels[count] == null || count == index) {
+                    continue;
+                }
+
+                if (labels[index].toLowerCase().replace(" ", "").equals(labels[count].toLowerCase().replace(" ", ""))) {
+                    if(packages[index].equals(packages[count])) {
+                        labels[index] = AppsManager.AppUtils.insertActivityName(labels[index], activities[index]);
+                        labels[count] = AppsManager.AppUtils.insertActivityName(labels[count], activities[count]);
+                    }
+                    else {
+                        labels[count] = AppsManager.AppUtils.getNewLabel(labels[count], activities[count]);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void assertSameLabels(String[] labels, String[] packages, String[] activities) {
+        String[] expected = labels.clone(), actual = labels.clone();
+
+        nestedLoop(expected, packages, activities);
+        AppsManager.AppUtils.checkEquality(actual, packages, activities);
+
+        assertArrayEquals(Arrays.toString(labels) + " " + Arrays.toString(packages) + " " + Arrays.toString(activities), expected, actual);
+    }
+
+    @Test
+    public void sameLabelsAsTheNestedLoop() {
+        for(int round = 0; round < 20000; round++) {
+            int n = random.nextInt(12);
+
+            String[] labels = new String[n], packages = new String[n], activities = new String[n];
+            for(int count = 0; count < n; count++) {
+                labels[count] = random.nextInt(15) == 0 ? null : LABELS[random.nextInt(LABELS.length)];
+                packages[count] = PACKAGES[random.nextInt(PACKAGES.length)];
+                activities[count] = packages[count] + "." + ACTIVITIES[random.nextInt(ACTIVITIES.length)];
+            }
+
+            assertSameLabels(labels, packages, activities);
+        }
+    }
+
+//    about three apps for each label, some of them from the same vendor
+    private String[][] catalog(int n) {
+        String[] labels = new String[n], packages = new String[n], activities = new String[n];
+        for(int count = 0; count < n; count++) {
+            labels[count] = "App " + random.nextInt(n / 3);
+            packages[count] = "com.vendor" + random.nextInt(40) + ".app";
+            activities[count] = packages[count] + ".Activity" + random.nextInt(3);
+        }
+        return new String[][] {labels, packages, activities};
+    }
+
+    @Test
+    public void sameLabelsOnALargeCatalog() {
+        String[][] catalog = catalog(CATALOG);
+        assertSameLabels(catalog[0], catalog[1], catalog[2]);
+    }
+
+    @Test
+    public void checkEqualityBenchmark() {
+        String[][] catalog = catalog(CATALOG);
+        String[] labels = catalog[0], packages = catalog[1], activities = catalog[2];
+
+        for(int round = 0; round < WARMUP; round++) {
+            nestedLoop(labels.clone(), packages, activities);
+            AppsManager.AppUtils.checkEquality(labels.clone(), packages, activities);
+        }
+
+        long start = System.nanoTime();
+        for(int round = 0; round < ROUNDS; round++) nestedLoop(labels.clone(), packages, activities);
+        long loopTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for(int round = 0; round < ROUNDS; round++) AppsManager.AppUtils.checkEquality(labels.clone(), packages, activities);
+        long groupTime = System.nanoTime() - start;
+
+        System.out.println("checkEquality, " + CATALOG + " apps: nested loop " + loopTime / ROUNDS / 1000 + "us, groups " + groupTime / ROUNDS / 1000 + "us");
+    }
+
+    @Test
+    public void activitiesOfTheSameAppAndDifferentApps() {
+        String[] labels = {"Maps", "Maps", "maps", "Clock"};
+        String[] packages = {"com.google.android.apps.maps", "com.google.android.apps.maps", "com.here.maps", "com.android.deskclock"};
+        String[] activities = {"com.google.android.apps.maps.MapsActivity", "com.google.android.apps.maps.NavigationActivity", "com.here.maps.Main", "com.android.deskclock.DeskClock"};
+
+        assertSameLabels(labels, packages, activities);
+
+        AppsManager.AppUtils.checkEquality(labels, packages, activities);
+        assertEquals("Maps - Maps", labels[0]);
+        assertEquals("Maps - Navigation", labels[1]);
+        assertEquals("Clock", labels[3]);
+    }
+}
@@ -0,0 +1,83 @@
+package ohi.andre.consolelauncher.tuils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Times FuzzyMatcher.match against CompareString.compareInfo, as SuggestionsManager called it, on a few thousand
+ * labels. The candidates are built once, as they are when a source of labels changes, so they aren't timed.
+ *
+ * The times are printed, they aren't asserted (they depend on the machine)
+ */
+
+public class FuzzyMatcherBenchmarkTest {
+
+    private static final String[] WORDS = {"Google", "Play", "Store", "Maps", "Camera", "Calendar", "Music", "Player", "Photo", "Editor", "Téléphone", "Notes", "Weather", "Mail", "Clock", "Files", "Manager", "Chat", "Video", "Browser"};
+    private static final String[] TYPED = {"goo", "play st", "cam", "calendr", "music pl", "photo", "tele", "wethaer", "mail", "files man", "v", "br"};
+
+    private static final int LABELS = 5000, WARMUP = 200, ROUNDS = 100;
+
+    private static List<String> labels() {
+        Random random = new Random(42);
+
+        List<String> labels = new ArrayList<>(LABELS);
+        for(int count = 0; count < LABELS; count++) {
+            StringBuilder builder = new StringBuilder();
+            int words = 1 + random.nextInt(3);
+            for(int w = 0; w < words; w++) {
+                if(w > 0) builder.append(' ');
+                builder.append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            builder.append(' ').append(count);
+            labels.add(builder.toString());
+        }
+        return labels;
+    }
+
+    private static int library(List<String> labels, boolean scroll) {
+        int found = 0;
+        for(String t : TYPED) found += ohi.andre.comparestring.Compare.compareInfo(labels, t.trim().toLowerCase(), 3, scroll).size();
+        return found;
+    }
+
+    private static int matcher(List<FuzzyMatcher.Candidate> candidates, boolean scroll) {
+        int found = 0;
+        for(String t : TYPED) found += FuzzyMatcher.match(candidates, t, 3, scroll).size();
+        return found;
+    }
+
+    @Test
+    public void matchBenchmark() {
+        List<String> labels = labels();
+        List<FuzzyMatcher.Candidate> candidates = FuzzyMatcher.candidates(labels);
+
+        for(boolean scroll : new boolean[] {false, true}) {
+            int found = 0;
+            for(int round = 0; round < WARMUP; round++) {
+                found += library(labels, scroll);
+                found += matcher(candidates, scroll);
+            }
+
+            long start = System.nanoTime();
+            int libraryFound = 0;
+            for(int round = 0; round < ROUNDS; round++) libraryFound += library(labels, scroll);
+            long libraryTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int matcherFound = 0;
+            for(int round = 0; round < ROUNDS; round++) matcherFound += matcher(candidates, scroll);
+            long matcherTime = System.nanoTime() - start;
+
+//            normalizing can only add matches
+            assertTrue(found > 0 && matcherFound >= libraryFound);
+
+            long queries = (long) ROUNDS * TYPED.length;
+            System.out.println((scroll ? "scroll" : "linear") + ", " + LABELS + " labels: CompareString " + libraryTime / queries / 1000 + "us, FuzzyMatcher " + matcherTime / queries / 1000 + "us per query");
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package ohi.andre.consolelauncher.tuils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * FuzzyMatcher against the CompareString functions it replaced, called as SuggestionsManager called them: the labels
+ * as they were loaded (mixed case, accents) and the input trimmed and in lower case.
+ *
+ * FuzzyMatcher compares the normalized labels (see Compare.normalize), so this is a deliberate ranking change: a char
+ * which differs from the input only by its case or by an accent now counts. Thus a rate is never lower than before,
+ * it's the same when the label and the input are already in their normalized form, and it's the library rate of the
+ * normalized label and input.
+ * No suggestion which was shown before is lost, and "whatsapp" now rates WhatsApp as high as "WhatsApp" did
+ */
+
+public class FuzzyMatcherTest {
+
+    private static final String LOWER = "abcdefghijklmnopqrstuvwxyz0123456789 -_.";
+    private static final String MIXED = LOWER + "ABCDEFGHIJKLMNOPQRSTUVWXYZéèàùòìÉÀçÇñÑüÜ";
+
+    private final Random random = new Random(42);
+
+    private String randomString(String alphabet, int maxLength) {
+        int length = random.nextInt(maxLength + 1);
+
+        StringBuilder builder = new StringBuilder(length);
+        for(int count = 0; count < length; count++) {
+//            few distinct chars, so that there are many matches
+            builder.append(alphabet.charAt(random.nextInt(random.nextBoolean() ? 6 : alphabet.length())));
+        }
+        return builder.toString();
+    }
+
+//    labels are trimmed by normalize, which would move their chars
+    private String randomLabel(String alphabet, int maxLength) {
+        return randomString(alphabet, maxLength).trim();
+    }
+
+//    what SuggestionsManager did to the input before calling the library
+    private static String baselineInput(String typed) {
+        return typed.trim().toLowerCase();
+    }
+
+    private static int libraryRate(String label, String typed, boolean scroll) {
+        return scroll ? ohi.andre.comparestring.Compare.scrollComparison(label, typed) : ohi.andre.comparestring.Compare.linearComparison(label, typed);
+    }
+
+    private static void assertRates(String label, String typed) {
+        FuzzyMatcher.Candidate candidate = new FuzzyMatcher.Candidate(label);
+        FuzzyMatcher.Query query = new FuzzyMatcher.Query(typed);
+
+        String input = baselineInput(typed);
+        boolean normalized = Compare.normalize(label).equals(label) && Compare.normalize(typed).equals(input);
+
+        for(boolean scroll : new boolean[] {false, true}) {
+            int rate = FuzzyMatcher.rate(candidate, query, scroll);
+            int baseline = libraryRate(label, input, scroll);
+            String message = (scroll ? "scroll: " : "linear: ") + label + " / " + typed;
+
+            assertTrue(message + " " + rate + " < " + baseline, rate >= baseline);
+            if(normalized) assertEquals(message, baseline, rate);
+            assertEquals(message, libraryRate(Compare.normalize(label), Compare.normalize(typed), scroll), rate);
+        }
+
+        assertEquals(label + " / " + typed, FuzzyMatcher.rate(candidate, query, true), FuzzyMatcher.rate(label, query, true));
+    }
+
+    @Test
+    public void sameRatesOnNormalizedLabels() {
+        for(int count = 0; count < 50000; count++) assertRates(randomLabel(LOWER, 20), randomString(LOWER, 12));
+    }
+
+    @Test
+    public void ratesOnRawLabelsAreNeverLower() {
+        for(int count = 0; count < 50000; count++) assertRates(randomLabel(MIXED, 20), randomString(MIXED, 12));
+    }
+
+    @Test
+    public void ratesOnLongLabels() {
+//        over 64 chars the scalar path is used
+        for(int count = 0; count < 2000; count++) assertRates(randomLabel(MIXED, 150), randomString(MIXED, 20));
+    }
+
+    @Test
+    public void ratesOnRealLabels() {
+        String[] labels = {"WhatsApp", "Google Play Store", "Calculator", "Calendar", "Camera", "Chrome", "Clock", "Contacts", "Files", "Gmail", "Maps", "Messages", "Phone", "Photos", "Settings", "YouTube", "Téléphone", "Música"};
+        String[] typed = {"wha", "whtasapp", "cal", "cam", "calc", "set", "STORE", "play store", "tele", "musi", "ph", "", "x"};
+
+        for(String l : labels) for(String t : typed) assertRates(l, t);
+
+//        the ranking change: every char counts, whatever its case
+        assertEquals(8, FuzzyMatcher.rate(new FuzzyMatcher.Candidate("WhatsApp"), new FuzzyMatcher.Query("whatsapp"), false));
+    }
+
+    @Test
+    public void matchesAreASupersetOfCompareInfo() {
+        for(int round = 0; round < 500; round++) {
+            boolean mixed = random.nextBoolean();
+
+            List<String> labels = new ArrayList<>();
+            int n = 1 + random.nextInt(40);
+            for(int count = 0; count < n; count++) labels.add(randomLabel(mixed ? MIXED : LOWER, 15));
+
+            String typed = randomString(mixed ? MIXED : LOWER, 8);
+            int minRate = random.nextInt(4);
+            boolean scroll = random.nextBoolean();
+
+            Set<String> expected = new HashSet<>();
+            for(ohi.andre.comparestring.Compare.CompareInfo i : ohi.andre.comparestring.Compare.compareInfo(labels, baselineInput(typed), minRate, scroll)) expected.add(i.s);
+
+            Set<String> actual = new HashSet<>();
+            for(FuzzyMatcher.Match m : FuzzyMatcher.match(FuzzyMatcher.candidates(labels), typed, minRate, scroll)) actual.add(m.candidate.label);
+
+            assertTrue(typed + " in " + labels, actual.containsAll(expected));
+            if(!mixed) assertEquals(typed + " in " + labels, expected, actual);
+        }
+    }
+
+    @Test
+    public void bestIsTheFirstWithTheHighestRate() {
+        for(int round = 0; round < 2000; round++) {
+            List<String> labels = new ArrayList<>();
+            int n = 1 + random.nextInt(20);
+            for(int count = 0; count < n; count++) labels.add(randomLabel(MIXED, 12));
+
+            String typed = randomString(MIXED, 6);
+            int minRate = random.nextInt(3);
+
+            String expected = null;
+            int bestRate = minRate - 1;
+            for(String l : labels) {
+                int rate = libraryRate(Compare.normalize(l), Compare.normalize(typed), true);
+                if(rate > bestRate) {
+                    bestRate = rate;
+                    expected = l;
+                }
+            }
+
+            FuzzyMatcher.Candidate best = FuzzyMatcher.best(FuzzyMatcher.candidates(labels), typed, minRate, true);
+            assertEquals(expected, best == null ? null : best.label);
+        }
+    }
+}